@@ -0,0 +1,342 @@
+package com.donnan.git.guru.limiter;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 自适应并发限制器
+ * 不预先设定并发数，而是根据下游的反馈动态调整：
+ * 1. 请求被下游拒绝(限流、超时等)时按比例缩小并发上限(乘性减)；
+ * 2. 请求成功时比较本次延迟和长期延迟，延迟没有明显上升时加性增(每个窗口加1)，延迟上升时按梯度缩小；
+ * 3. 实际并发数不到上限一半时不放大，避免空闲时上限无限增长。
+ * 延迟基线是长期延迟的平均值，只能识别延迟的突然上升；上限缓慢越过下游容量时基线会随之上移，
+ * 此时依靠下游的超时和限流响应(第1条)收缩上限。
+ * 等待许可的同步和异步请求按到达顺序排队，释放许可或上限放大时直接交给队首的请求。
+ * @author Donnan
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final String name;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 等待许可的请求，按到达顺序获得许可
+    private final Deque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+
+    // 当前并发上限
+    private double limit;
+
+    // 当前并发数
+    private int inFlight;
+
+    // 长期延迟(纳秒)，指数加权平均
+    private double longRtt;
+
+    // 纳秒时钟
+    private final LongSupplier clock;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this(name, initialLimit, minLimit, maxLimit, System::nanoTime);
+    }
+
+    /**
+     * @param clock 纳秒时钟，测试时可以替换
+     */
+    AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, LongSupplier clock) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("并发上限的范围不合法: [" + minLimit + ", " + maxLimit + "]");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.min(Math.max(initialLimit, minLimit), maxLimit);
+        this.clock = clock;
+    }
+
+    /**
+     * 获取许可，并发数达到上限时阻塞
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 许可，超时返回null
+     * @throws InterruptedException 等待过程中线程被中断
+     */
+    public Permit acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        CompletableFuture<Permit> waiter = acquireAsync();
+        try {
+            return waiter.get(timeout, unit);
+        } catch (TimeoutException | InterruptedException e) {
+            // 取消失败说明许可已经交给了当前请求
+            if (waiter.cancel(false)) {
+                if (e instanceof InterruptedException) {
+                    throw (InterruptedException) e;
+                }
+                return null;
+            }
+            Permit permit = waiter.join();
+            if (e instanceof InterruptedException) {
+                permit.onIgnore();
+                throw (InterruptedException) e;
+            }
+            return permit;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 异步获取许可，并发数达到上限时排队，由释放许可的请求完成，不占用线程
+     * 取消返回的future即放弃排队
+     * @return 获得许可时完成
+     */
+    public CompletableFuture<Permit> acquireAsync() {
+        CompletableFuture<Permit> waiter;
+        lock.lock();
+        try {
+            // 已有请求在排队时不插队
+            if (waiters.isEmpty() && inFlight < currentLimit()) {
+                return CompletableFuture.completedFuture(occupy());
+            }
+            waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+        } finally {
+            lock.unlock();
+        }
+        waiter.whenComplete((permit, e) -> {
+            if (e != null) {
+                abandon(waiter);
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * 非阻塞地获取许可
+     * @return 许可，并发数达到上限或有请求在排队时返回null
+     */
+    public Permit tryAcquire() {
+        lock.lock();
+        try {
+            return !waiters.isEmpty() || inFlight >= currentLimit() ? null : occupy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 不受上限约束地获取许可，用于不能等待的请求
+     * 仍然计入并发数并反馈结果，使其他请求感知到下游的压力
+     * @return 许可
+     */
+    public Permit forceAcquire() {
+        lock.lock();
+        try {
+            return occupy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 只在持有锁时调用
+     */
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    private Permit occupy() {
+        inFlight++;
+        return new Permit(clock.getAsLong(), inFlight);
+    }
+
+    private void release(Permit permit, Outcome outcome) {
+        List<Grant> grants;
+        lock.lock();
+        try {
+            inFlight--;
+            int previous = currentLimit();
+            switch (outcome) {
+                case SUCCESS -> onSample(clock.getAsLong() - permit.startNanos, permit.inFlightAtStart);
+                case DROPPED -> limit = Math.max(minLimit, limit * LimiterConstant.BACKOFF_RATIO);
+                default -> {
+                }
+            }
+            if (currentLimit() != previous) {
+                log.debug("并发限制器[{}]上限调整: {} -> {}", name, previous, currentLimit());
+            }
+            grants = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        complete(grants);
+    }
+
+    /**
+     * 排队的请求被取消或超时时移出队列
+     */
+    private void abandon(CompletableFuture<Permit> waiter) {
+        List<Grant> grants;
+        lock.lock();
+        try {
+            if (!waiters.remove(waiter)) {
+                return;
+            }
+            grants = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        complete(grants);
+    }
+
+    /**
+     * 按到达顺序把空闲的许可交给排队的请求，只在持有锁时调用
+     * @return 获得许可的请求，在释放锁之后完成，避免在锁内执行回调
+     */
+    private List<Grant> dispatch() {
+        List<Grant> grants = new ArrayList<>();
+        while (!waiters.isEmpty() && inFlight < currentLimit()) {
+            grants.add(new Grant(waiters.poll(), occupy()));
+        }
+        return grants;
+    }
+
+    private void complete(List<Grant> grants) {
+        for (Grant grant : grants) {
+            // 请求在获得许可前已经取消，许可归还给下一个请求
+            if (!grant.waiter.complete(grant.permit)) {
+                grant.permit.onIgnore();
+            }
+        }
+    }
+
+    /**
+     * 根据成功请求的延迟调整上限，只在持有锁时调用
+     */
+    private void onSample(long rtt, int inFlightAtStart) {
+        if (rtt <= 0) {
+            return;
+        }
+        if (longRtt <= 0) {
+            longRtt = rtt;
+            return;
+        }
+        longRtt = longRtt * (1 - LimiterConstant.LONG_RTT_SMOOTHING) + rtt * LimiterConstant.LONG_RTT_SMOOTHING;
+        // 负载下降后长期延迟偏高，加速回落
+        if (longRtt / rtt > LimiterConstant.RTT_TOLERANCE) {
+            longRtt *= 0.95;
+        }
+
+        // 并发数不到上限一半时说明没有充分使用，延迟不能反映上限是否合适
+        if (inFlightAtStart * 2 < limit) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, LimiterConstant.RTT_TOLERANCE * longRtt / rtt));
+        if (gradient < 1.0) {
+            // 延迟明显上升，按梯度向 limit * gradient 平滑收缩
+            limit = limit * (1 - LimiterConstant.LIMIT_SMOOTHING) + limit * gradient * LimiterConstant.LIMIT_SMOOTHING;
+        } else {
+            // 加性增：每个上限窗口的请求全部成功后上限加1
+            limit += 1.0 / limit;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+
+    /**
+     * 已分配许可、等待完成的请求
+     */
+    private record Grant(CompletableFuture<Permit> waiter, Permit permit) {
+    }
+
+    /**
+     * 请求结果
+     */
+    private enum Outcome {
+        // 成功，参与延迟采样
+        SUCCESS,
+        // 被下游拒绝或超时，缩小上限
+        DROPPED,
+        // 与下游负载无关的失败，只释放许可
+        IGNORED
+    }
+
+    /**
+     * 并发许可，每个许可必须且只能调用一次结束方法
+     */
+    public class Permit {
+
+        private final long startNanos;
+
+        private final int inFlightAtStart;
+
+        private boolean finished;
+
+        private Permit(long startNanos, int inFlightAtStart) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * 请求成功
+         */
+        public void onSuccess() {
+            finish(Outcome.SUCCESS);
+        }
+
+        /**
+         * 请求被下游限流或超时
+         */
+        public void onDropped() {
+            finish(Outcome.DROPPED);
+        }
+
+        /**
+         * 请求失败但与下游负载无关
+         */
+        public void onIgnore() {
+            finish(Outcome.IGNORED);
+        }
+
+        private void finish(Outcome outcome) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+            }
+            release(this, outcome);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.donnan.git.guru.limiter;
+
+/**
+ * 并发限制器常量
+ * @author Donnan
+ */
+public class LimiterConstant {
+
+    // 请求被拒绝时上限缩小的比例
+    public static final double BACKOFF_RATIO = 0.7;
+
+    // 短期延迟超过长期延迟的该倍数时认为下游开始排队
+    public static final double RTT_TOLERANCE = 1.5;
+
+    // 长期延迟的平滑系数，约等于最近200个请求的平均
+    public static final double LONG_RTT_SMOOTHING = 0.005;
+
+    // 上限调整的平滑系数
+    public static final double LIMIT_SMOOTHING = 0.2;
+}
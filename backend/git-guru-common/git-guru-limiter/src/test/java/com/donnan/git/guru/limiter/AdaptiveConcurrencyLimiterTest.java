@@ -0,0 +1,196 @@
+package com.donnan.git.guru.limiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AdaptiveConcurrencyLimiter 测试
+ * 用虚拟时钟和模拟的下游服务驱动限制器：下游并发不超过容量时延迟恒定，超过容量后请求排队、延迟线性上升，
+ * 延迟超过客户端超时时间的请求按超时丢弃
+ * @author Donnan
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long BASE_LATENCY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // 客户端超时时间，下游排队超过基础延迟的2倍时请求超时
+    private static final long TIMEOUT = BASE_LATENCY * 2;
+
+    private final AtomicLong now = new AtomicLong(1);
+
+    @Test
+    void tryAcquireStopsAtLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 10, now::get);
+        assertNotNull(limiter.tryAcquire());
+        assertNotNull(limiter.tryAcquire());
+        assertNull(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        // 强制获取不受上限约束，但计入并发数
+        assertNotNull(limiter.forceAcquire());
+        assertEquals(3, limiter.getInFlight());
+    }
+
+    @Test
+    void asyncWaiterIsCompletedByRelease() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 10, now::get);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waiter = limiter.acquireAsync();
+        assertFalse(waiter.isDone());
+        // 有请求在排队时不插队
+        assertNull(limiter.tryAcquire());
+
+        permit.onIgnore();
+        assertTrue(waiter.isDone());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void cancelledAsyncWaiterLeavesQueue() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 10, now::get);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        limiter.acquireAsync().cancel(false);
+        // 超时的同步请求同样离开队列
+        assertNull(limiter.acquire(10, TimeUnit.MILLISECONDS));
+
+        permit.onIgnore();
+        assertEquals(0, limiter.getInFlight());
+        assertNotNull(limiter.tryAcquire());
+    }
+
+    @Test
+    void droppedShrinksLimitAndIgnoredDoesNot() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 20, 1, 100, now::get);
+
+        limiter.tryAcquire().onIgnore();
+        assertEquals(20, limiter.getLimit());
+
+        limiter.tryAcquire().onDropped();
+        assertEquals(14, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void permitFinishesOnlyOnce() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 20, 1, 100, now::get);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        permit.onDropped();
+        permit.onDropped();
+        permit.onIgnore();
+
+        assertEquals(14, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void underusedLimitDoesNotGrow() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 20, 1, 100, now::get);
+        for (int i = 0; i < 1000; i++) {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+            now.addAndGet(BASE_LATENCY);
+            permit.onSuccess();
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    void growsToMaxWhenBackendHasSpareCapacity() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 5, 1, 40, now::get);
+        simulate(limiter, 1000, 20_000);
+        assertEquals(40, limiter.getLimit());
+    }
+
+    @Test
+    void suddenLatencyRiseShrinksLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 20, 1, 100, now::get);
+        respond(limiter, 200, BASE_LATENCY);
+        int before = limiter.getLimit();
+
+        // 下游延迟突然变为原来的3倍，没有任何请求超时，上限也应收缩
+        respond(limiter, 20, BASE_LATENCY * 3);
+        assertTrue(limiter.getLimit() < before, "延迟上升后上限应收缩: " + before + " -> " + limiter.getLimit());
+    }
+
+    @Test
+    void convergesNearBackendCapacity() {
+        int capacity = 30;
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 5, 1, 500, now::get);
+        simulate(limiter, capacity, 50_000);
+
+        int limit = limiter.getLimit();
+        assertTrue(limit >= capacity / 2 && limit <= capacity * 2, "上限应收敛到下游容量附近，实际: " + limit);
+    }
+
+    @Test
+    void recoversAfterBackendSlowsDown() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 5, 1, 500, now::get);
+        simulate(limiter, 60, 30_000);
+        int before = limiter.getLimit();
+
+        // 下游容量下降，上限随之收缩
+        simulate(limiter, 15, 30_000);
+        int after = limiter.getLimit();
+        assertTrue(after < before, "容量下降后上限应收缩: " + before + " -> " + after);
+        assertTrue(after <= 15 * 2, "上限应接近新的容量，实际: " + after);
+    }
+
+    /**
+     * 以持续不断的请求驱动限制器，下游超过容量后按并发数线性增加延迟，延迟超过超时时间的请求被丢弃
+     * @param capacity 下游不排队时能同时处理的请求数
+     * @param requests 完成的请求总数
+     */
+    private void simulate(AdaptiveConcurrencyLimiter limiter, int capacity, int requests) {
+        PriorityQueue<Request> running = new PriorityQueue<>((a, b) -> Long.compare(a.finishAt, b.finishAt));
+        int completed = 0;
+        while (completed < requests) {
+            AdaptiveConcurrencyLimiter.Permit permit;
+            while ((permit = limiter.tryAcquire()) != null) {
+                int inFlight = running.size() + 1;
+                long latency = BASE_LATENCY * Math.max(capacity, inFlight) / capacity;
+                running.add(new Request(permit, now.get() + Math.min(latency, TIMEOUT), latency > TIMEOUT));
+            }
+            Request next = running.poll();
+            now.set(next.finishAt);
+            if (next.timeout) {
+                next.permit.onDropped();
+            } else {
+                next.permit.onSuccess();
+            }
+            completed++;
+        }
+        while (!running.isEmpty()) {
+            running.poll().permit.onIgnore();
+        }
+    }
+
+    /**
+     * 每轮占满上限，所有请求以相同延迟成功返回
+     */
+    private void respond(AdaptiveConcurrencyLimiter limiter, int rounds, long latency) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            AdaptiveConcurrencyLimiter.Permit permit;
+            while ((permit = limiter.tryAcquire()) != null) {
+                permits.add(permit);
+            }
+            now.addAndGet(latency);
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::onSuccess);
+            permits.clear();
+        }
+    }
+
+    private record Request(AdaptiveConcurrencyLimiter.Permit permit, long finishAt, boolean timeout) {
+    }
+}
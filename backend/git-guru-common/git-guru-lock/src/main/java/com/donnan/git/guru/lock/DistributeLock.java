@@ -52,4 +52,11 @@ public @interface DistributeLock {
      * @return
      */
     public int waitTime() default DistributeLockConstant.DEFAULT_WAIT_TIME;
+
+    /**
+     * 获取锁失败时是否跳过方法执行并返回null，而不是抛出异常
+     * 适用于集群中只需一个节点执行的定时任务
+     * @return
+     */
+    public boolean skipIfLocked() default false;
 }
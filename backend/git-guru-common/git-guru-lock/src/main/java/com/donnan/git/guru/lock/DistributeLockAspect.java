@@ -98,6 +98,10 @@ public class DistributeLockAspect {
                 }
             }
 
+            if (!lockResult && distributeLock.skipIfLocked()) {
+                LOG.info(String.format("lock held by others, skip for key : %s", lockKey));
+                return null;
+            }
             if (!lockResult) {
                 LOG.warn(String.format("lock failed for key : %s , expire : %s", lockKey, expireTime));
                 throw new DistributeLockException("acquire lock failed... key : " + lockKey);
@@ -12,6 +12,10 @@ public class GitHubConstant {
     public static final String GITHUB_EVENT_ISSUE = "IssuesEvent";
     public static final String GITHUB_EVENT_PULL_REQUEST_REVIEW = "PullRequestReviewEvent";
 
+    // REST事件接口只返回最近90天、最多300个事件，活跃度评分的阈值按该范围设定
+    public static final int GITHUB_EVENT_WINDOW_DAYS = 90;
+    public static final int GITHUB_EVENT_LIMIT = 300;
+
 
 
 }
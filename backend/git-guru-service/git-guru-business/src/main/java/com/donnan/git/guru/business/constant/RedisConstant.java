@@ -10,4 +10,24 @@ public class RedisConstant {
 
     public static final String GITHUB_REPO_CONTENT_PREFIX = "github_repo_content";
 
+    public static final String GITHUB_TOKEN_BUDGET_PREFIX = "github_token_budget:";
+
+    public static final String GITHUB_USER_FILTER_KEY = "github_user_filter";
+
+    public static final String GITHUB_USER_FILTER_JOURNAL_KEY = "github_user_filter_journal";
+
+    public static final String GITHUB_DISCOVERY_CURSOR_KEY = "github_discovery_cursor";
+
+    public static final String GITHUB_USER_DEMAND_KEY = "github_user_demand";
+
+    public static final String GITHUB_USER_REFRESHED_KEY = "github_user_refreshed";
+
+    public static final String GITHUB_USER_REFRESHED_BACKFILLED_KEY = "github_user_refreshed_backfilled";
+
+    public static final String GITHUB_GRAPH_FRONTIER_KEY = "github_graph_frontier";
+
+    public static final String GITHUB_GRAPH_PROCESSING_KEY = "github_graph_processing";
+
+    public static final String GITHUB_GRAPH_VISITED_KEY = "github_graph_visited";
+
 }
@@ -0,0 +1,344 @@
+package com.donnan.git.guru.business.crawler;
+
+import com.donnan.git.guru.business.constant.RedisConstant;
+import com.donnan.git.guru.business.entity.github.dto.GitHubUserDto;
+import com.donnan.git.guru.business.entity.github.dto.GitHubUserInfoDto;
+import com.donnan.git.guru.business.github.GitHubClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于关注关系图发现GitHub用户
+ * 从种子用户(配置的用户和平台用户查询过的用户)出发，沿 /following 和 /followers 按广度优先展开。
+ * 待访问队列是Redis有序集合，分数的整数部分为层数，同一层中通过关注发现的用户优先于通过关注者发现的用户；
+ * 已发现的用户记录在按GitHub id寻址的位图中，每个用户只占1位，认领和入队在Lua脚本中原子完成，
+ * 多个节点、多次重启之间都不会重复访问同一个用户。
+ * 取出的用户先放入处理中集合，直到入库成功或被确认跳过后才移除，节点在补全、评分或入库前退出时，
+ * 超过租期的用户会被放回队列重新处理；待访问队列达到上限后暂停认领新用户，未认领的用户之后仍可被重新发现。
+ * @author Donnan
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FollowerGraphCrawler {
+
+    // 通过关注者发现的用户相对通过关注发现的用户的分数偏移
+    private static final double FOLLOWER_OFFSET = 0.5;
+
+    // 处理中集合成员中分数和用户之间的分隔符
+    private static final String SEPARATOR = "|";
+
+    /**
+     * KEYS[1]: 已发现位图, KEYS[2]: 待访问队列
+     * ARGV: 队列上限, 之后按 id, 成员, 分数 三个一组
+     * 返回: 新入队的用户数
+     */
+    private static final String OFFER_SCRIPT = """
+            local size = redis.call('ZCARD', KEYS[2])
+            local limit = tonumber(ARGV[1])
+            local added = 0
+            for i = 2, #ARGV, 3 do
+                if size >= limit then
+                    break
+                end
+                if redis.call('SETBIT', KEYS[1], ARGV[i], 1) == 0 then
+                    redis.call('ZADD', KEYS[2], ARGV[i + 2], ARGV[i + 1])
+                    added = added + 1
+                    size = size + 1
+                end
+            end
+            return added
+            """;
+
+    /**
+     * KEYS[1]: 待访问队列, KEYS[2]: 处理中集合
+     * ARGV: 取出数量, 当前时间
+     * 返回: 处理中集合的成员，格式为 分数|id:login
+     */
+    private static final String POP_SCRIPT = """
+            local popped = redis.call('ZPOPMIN', KEYS[1], ARGV[1])
+            local entries = {}
+            for i = 1, #popped, 2 do
+                local entry = popped[i + 1] .. '|' .. popped[i]
+                redis.call('ZADD', KEYS[2], ARGV[2], entry)
+                entries[#entries + 1] = entry
+            end
+            return entries
+            """;
+
+    private static final DefaultRedisScript<Long> OFFER = new DefaultRedisScript<>(OFFER_SCRIPT, Long.class);
+
+    private static final DefaultRedisScript<List> POP = new DefaultRedisScript<>(POP_SCRIPT, List.class);
+
+    // 是否启用关系图发现，关闭后只使用搜索或随机发现
+    @Value("${github.crawler.graph.enabled:true}")
+    private boolean enabled;
+
+    // 种子用户名，逗号分隔
+    @Value("${github.crawler.graph.seeds:}")
+    private String seeds;
+
+    // 最多展开的层数，超过该层数的用户只入库不再展开
+    @Value("${github.crawler.graph.max.depth:3}")
+    private int maxDepth;
+
+    // 每个用户每个方向最多展开的邻居数
+    @Value("${github.crawler.graph.max.neighbors:100}")
+    private int maxNeighbors;
+
+    // 取出后多久没有入库视为节点退出(分钟)
+    @Value("${github.crawler.graph.lease.minutes:30}")
+    private long leaseMinutes;
+
+    // 待访问队列的最大用户数
+    @Value("${github.crawler.graph.max.frontier:1000000}")
+    private long maxFrontier;
+
+    private final GitHubClient gitHubClient;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // 本节点是否已提交配置的种子用户
+    private volatile boolean seeded;
+
+    // 本节点取出但还未确认的用户，按GitHub id记录处理中集合的成员
+    private final Map<Integer, Pending> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 把用户作为种子加入待访问队列，已发现过的用户不会重复加入
+     * @param id GitHub用户id
+     * @param login 用户名
+     */
+    public void offerSeed(Integer id, String login) {
+        if (!enabled || id == null || StringUtils.isBlank(login)) {
+            return;
+        }
+        offer(List.of(new Node(id, login, 0)));
+    }
+
+    /**
+     * 从待访问队列中取出用户并展开其关注关系
+     * 取出的用户留在处理中集合，入库成功或确认跳过后需要调用 {@link #acknowledge(Collection)}
+     * @param count 需要的用户数量
+     * @return 取出的用户，队列为空或Redis不可用时可能少于需要的数量
+     */
+    public synchronized List<GitHubUserDto> discover(int count) {
+        List<GitHubUserDto> users = new ArrayList<>();
+        if (!enabled) {
+            return users;
+        }
+        if (!seeded) {
+            seedConfigured();
+            seeded = true;
+        }
+        reclaimExpired();
+
+        int added = 0;
+        while (users.size() < count) {
+            List<String> entries = pop(count - users.size());
+            if (entries.isEmpty()) {
+                break;
+            }
+            for (String entry : entries) {
+                Node node = Node.parse(entry);
+                if (node == null) {
+                    remove(List.of(entry));
+                    continue;
+                }
+                // 展开前崩溃时用户会被重新展开，已发现的邻居不会重复入队
+                if ((int) node.score() < maxDepth) {
+                    added += expand(node);
+                }
+                pending.put(node.id(), new Pending(entry, System.currentTimeMillis()));
+                GitHubUserDto user = new GitHubUserDto();
+                user.setId(node.id());
+                user.setLogin(node.login());
+                users.add(user);
+            }
+        }
+        if (!users.isEmpty()) {
+            log.info("关系图发现 {} 个用户, 新入队 {} 个用户", users.size(), added);
+        }
+        return users;
+    }
+
+    /**
+     * 展开用户的关注和关注者，未发现过的用户进入下一层
+     * @return 新入队的用户数
+     */
+    private int expand(Node node) {
+        double depth = Math.floor(node.score()) + 1;
+        List<Node> neighbors = new ArrayList<>();
+        gitHubClient.streamFollowing(node.login()).limit(maxNeighbors)
+                .forEach(user -> neighbors.add(new Node(user.getId(), user.getLogin(), depth)));
+        gitHubClient.streamFollowers(node.login()).limit(maxNeighbors)
+                .forEach(user -> neighbors.add(new Node(user.getId(), user.getLogin(), depth + FOLLOWER_OFFSET)));
+        return offer(neighbors);
+    }
+
+    /**
+     * 认领未发现过的用户并加入待访问队列
+     * @return 新入队的用户数
+     */
+    private int offer(List<Node> nodes) {
+        List<String> args = new ArrayList<>(nodes.size() * 3 + 1);
+        args.add(String.valueOf(maxFrontier));
+        for (Node node : nodes) {
+            if (node.id() == null || node.id() < 0 || StringUtils.isBlank(node.login())) {
+                continue;
+            }
+            args.add(String.valueOf(node.id()));
+            args.add(node.member());
+            args.add(String.valueOf(node.score()));
+        }
+        if (args.size() == 1) {
+            return 0;
+        }
+        try {
+            Long added = stringRedisTemplate.execute(OFFER,
+                    List.of(RedisConstant.GITHUB_GRAPH_VISITED_KEY, RedisConstant.GITHUB_GRAPH_FRONTIER_KEY),
+                    args.toArray());
+            return added == null ? 0 : added.intValue();
+        } catch (Exception e) {
+            log.warn("关系图用户入队失败: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 取出分数最低的用户并记录到处理中集合
+     * @return 处理中集合的成员
+     */
+    private List<String> pop(int count) {
+        List<String> entries = new ArrayList<>();
+        try {
+            List<?> result = stringRedisTemplate.execute(POP,
+                    List.of(RedisConstant.GITHUB_GRAPH_FRONTIER_KEY, RedisConstant.GITHUB_GRAPH_PROCESSING_KEY),
+                    String.valueOf(count), String.valueOf(System.currentTimeMillis()));
+            if (result != null) {
+                result.forEach(entry -> entries.add(String.valueOf(entry)));
+            }
+        } catch (Exception e) {
+            log.warn("从关系图待访问队列取出用户失败: {}", e.getMessage());
+        }
+        return entries;
+    }
+
+    /**
+     * 确认用户已入库或无需入库，从处理中集合移除
+     * 不是由本节点从关系图取出的用户会被忽略
+     * @param ids GitHub用户id
+     */
+    public void acknowledge(Collection<Integer> ids) {
+        List<String> entries = new ArrayList<>();
+        for (Integer id : ids) {
+            Pending removed = id == null ? null : pending.remove(id);
+            if (removed != null) {
+                entries.add(removed.entry());
+            }
+        }
+        remove(entries);
+    }
+
+    private void remove(List<String> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForZSet().remove(RedisConstant.GITHUB_GRAPH_PROCESSING_KEY, entries.toArray());
+        } catch (Exception e) {
+            log.warn("移除处理中的关系图用户失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 把超过租期仍未完成的用户放回待访问队列，只有成功移除的节点负责放回，避免重复入队
+     */
+    private void reclaimExpired() {
+        long expiredBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(leaseMinutes);
+        // 超过租期的用户已经或即将被放回队列，本节点不再负责确认
+        pending.values().removeIf(entry -> entry.poppedAt() < expiredBefore);
+        try {
+            Set<String> expired = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(RedisConstant.GITHUB_GRAPH_PROCESSING_KEY, 0, expiredBefore);
+            if (expired == null || expired.isEmpty()) {
+                return;
+            }
+            int reclaimed = 0;
+            for (String entry : expired) {
+                Long removed = stringRedisTemplate.opsForZSet().remove(RedisConstant.GITHUB_GRAPH_PROCESSING_KEY, entry);
+                Node node = Node.parse(entry);
+                if (removed == null || removed == 0 || node == null) {
+                    continue;
+                }
+                stringRedisTemplate.opsForZSet().add(RedisConstant.GITHUB_GRAPH_FRONTIER_KEY, node.member(), node.score());
+                reclaimed++;
+            }
+            if (reclaimed > 0) {
+                log.info("放回 {} 个超过租期未完成展开的关系图用户", reclaimed);
+            }
+        } catch (Exception e) {
+            log.warn("回收处理中的关系图用户失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 提交配置的种子用户
+     */
+    private void seedConfigured() {
+        for (String login : StringUtils.split(seeds, ',')) {
+            GitHubUserInfoDto userInfo = gitHubClient.getUserInfo(login.trim());
+            if (userInfo == null) {
+                log.warn("关系图种子用户 {} 不存在", login);
+                continue;
+            }
+            offerSeed(userInfo.getId(), userInfo.getLogin());
+        }
+    }
+
+    /**
+     * 本节点取出的处理中集合成员
+     */
+    private record Pending(String entry, long poppedAt) {
+    }
+
+    /**
+     * 关系图中的用户，队列成员格式为 id:login
+     */
+    private record Node(Integer id, String login, double score) {
+
+        private String member() {
+            return id + ":" + login;
+        }
+
+        /**
+         * 解析处理中集合的成员，成员带上原分数，回收时按原层数放回
+         */
+        private static Node parse(String entry) {
+            int separator = entry.indexOf(SEPARATOR);
+            int colon = entry.indexOf(':', separator + 1);
+            if (separator < 0 || colon < 0) {
+                return null;
+            }
+            try {
+                return new Node(Integer.parseInt(entry.substring(separator + 1, colon)), entry.substring(colon + 1),
+                        Double.parseDouble(entry.substring(0, separator)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
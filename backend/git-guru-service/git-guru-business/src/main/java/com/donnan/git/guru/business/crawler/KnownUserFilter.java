@@ -0,0 +1,269 @@
+package com.donnan.git.guru.business.crawler;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.donnan.git.guru.business.constant.RedisConstant;
+import com.donnan.git.guru.business.entity.github.pojo.GitHubUser;
+import com.donnan.git.guru.business.mapper.GitHubUserMapper;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 已入库GitHub用户id的布隆过滤器
+ * 抓取时先用它筛掉已入库的用户，只有"可能存在"时才查库确认，避免每个候选用户一次数据库往返。
+ * 启动时按主键分批扫描用户表重建，开启Redis持久化时优先从Redis中的快照加载。
+ * 开启Redis持久化时，所有节点写入的id同时按写入时间记录到Redis的写入日志中；快照带有保存时间，
+ * 加载快照后再合并该时间之后的写入日志，保存快照前先合并全部写入日志，快照不会遗漏其他节点写入的用户。
+ * 过滤器只是预筛选：重建完成前所有id都视为可能存在；其他节点新写入的用户在下次合并前可能不在本节点的过滤器中，由主键约束兜底。
+ * @author Donnan
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class KnownUserFilter {
+
+    // 重建时每批读取的id数量
+    private static final int REBUILD_BATCH_SIZE = 10000;
+
+    // 快照中保存时间和过滤器内容之间的分隔符
+    private static final String SNAPSHOT_SEPARATOR = ",";
+
+    // 合并写入日志时向前多取的时间，容忍节点之间的时钟偏差
+    private static final long CLOCK_SKEW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    // 预计的用户数量，超过后误判率会上升
+    @Value("${github.crawler.filter.expected:10000000}")
+    private long expectedInsertions;
+
+    // 目标误判率
+    @Value("${github.crawler.filter.fpp:0.01}")
+    private double fpp;
+
+    // 是否把过滤器快照保存到Redis，重启时无需扫描用户表
+    @Value("${github.crawler.filter.redis.enabled:false}")
+    private boolean redisEnabled;
+
+    // 快照保存后写入日志保留的时长(小时)，需要覆盖并发保存快照的时间差
+    @Value("${github.crawler.filter.journal.retention.hours:24}")
+    private long journalRetentionHours;
+
+    private final GitHubUserMapper gitHubUserMapper;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private volatile BloomFilter<Integer> filter;
+
+    // 写入时持有读锁，替换过滤器时持有写锁，替换期间写入的id不会落在旧的过滤器上
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    // 是否已完成重建，重建期间写入的id先记录在当前过滤器中，重建完成后合并
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void init() {
+        this.filter = BloomFilter.create(Funnels.integerFunnel(), expectedInsertions, fpp);
+        // 在虚拟线程上重建，不阻塞应用启动
+        Thread.ofVirtual().name("known-user-filter-rebuild").start(() -> {
+            if (redisEnabled && load()) {
+                return;
+            }
+            rebuild();
+        });
+    }
+
+    /**
+     * 用户是否可能已入库
+     * @return false表示一定没有入库；true表示可能已入库，需要查库确认
+     */
+    public boolean mightContain(Integer id) {
+        return id == null || !ready || filter.mightContain(id);
+    }
+
+    /**
+     * 记录新入库的用户
+     */
+    public void put(Integer id) {
+        if (id != null) {
+            putAll(List.of(id));
+        }
+    }
+
+    /**
+     * 批量记录新入库的用户，开启Redis持久化时同时写入写入日志
+     */
+    public void putAll(Collection<Integer> ids) {
+        List<Integer> written = ids.stream().filter(Objects::nonNull).toList();
+        if (written.isEmpty()) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            written.forEach(filter::put);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (!redisEnabled) {
+            return;
+        }
+        try {
+            double now = System.currentTimeMillis();
+            Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+            written.forEach(id -> tuples.add(new DefaultTypedTuple<>(String.valueOf(id), now)));
+            stringRedisTemplate.opsForZSet().add(RedisConstant.GITHUB_USER_FILTER_JOURNAL_KEY, tuples);
+        } catch (Exception e) {
+            log.warn("记录已入库用户写入日志失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按主键分批扫描用户表重建过滤器
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        BloomFilter<Integer> rebuilt = BloomFilter.create(Funnels.integerFunnel(), expectedInsertions, fpp);
+        try {
+            int lastId = Integer.MIN_VALUE;
+            long count = 0;
+            while (true) {
+                List<Object> ids = gitHubUserMapper.selectObjs(new LambdaQueryWrapper<GitHubUser>()
+                        .select(GitHubUser::getId)
+                        .gt(GitHubUser::getId, lastId)
+                        .orderByAsc(GitHubUser::getId)
+                        .last("LIMIT " + REBUILD_BATCH_SIZE));
+                for (Object id : ids) {
+                    lastId = ((Number) id).intValue();
+                    rebuilt.put(lastId);
+                }
+                count += ids.size();
+                if (ids.size() < REBUILD_BATCH_SIZE) {
+                    break;
+                }
+            }
+            // 重建期间写入的id可能没有扫描到，合并到新的过滤器中
+            swap(rebuilt);
+            log.info("已入库用户过滤器重建完成, 用户数: {}, 耗时: {}ms", count, System.currentTimeMillis() - start);
+            if (redisEnabled) {
+                save();
+            }
+        } catch (Exception e) {
+            log.error("已入库用户过滤器重建失败，所有用户将查库确认: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 用新的过滤器替换当前过滤器，替换前合并当前过滤器中的id
+     */
+    private void swap(BloomFilter<Integer> replacement) {
+        swapLock.writeLock().lock();
+        try {
+            replacement.putAll(filter);
+            this.filter = replacement;
+            this.ready = true;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 把过滤器快照保存到Redis，保存前合并其他节点的写入日志
+     */
+    public void save() {
+        if (!redisEnabled || !ready) {
+            return;
+        }
+        try {
+            long savedAt = System.currentTimeMillis();
+            int merged = mergeJournal(0);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            filter.writeTo(out);
+            stringRedisTemplate.opsForValue().set(RedisConstant.GITHUB_USER_FILTER_KEY,
+                    savedAt + SNAPSHOT_SEPARATOR + Base64.getEncoder().encodeToString(out.toByteArray()));
+            // 快照已包含的写入日志保留一段时间后清理
+            stringRedisTemplate.opsForZSet().removeRangeByScore(RedisConstant.GITHUB_USER_FILTER_JOURNAL_KEY,
+                    0, savedAt - TimeUnit.HOURS.toMillis(journalRetentionHours));
+            log.info("已入库用户过滤器已保存到Redis, 大小: {}字节, 合并写入日志: {}", out.size(), merged);
+        } catch (Exception e) {
+            log.warn("保存已入库用户过滤器失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 从Redis加载过滤器快照
+     * @return 是否加载成功
+     */
+    private boolean load() {
+        try {
+            String snapshot = stringRedisTemplate.opsForValue().get(RedisConstant.GITHUB_USER_FILTER_KEY);
+            if (StringUtils.isBlank(snapshot)) {
+                return false;
+            }
+            // 没有保存时间的旧快照需要合并全部写入日志
+            long savedAt = 0;
+            int separator = snapshot.indexOf(SNAPSHOT_SEPARATOR);
+            if (separator > 0) {
+                savedAt = Long.parseLong(snapshot.substring(0, separator));
+                snapshot = snapshot.substring(separator + 1);
+            }
+            BloomFilter<Integer> loaded = BloomFilter.readFrom(
+                    new ByteArrayInputStream(Base64.getDecoder().decode(snapshot)), Funnels.integerFunnel());
+            if (!loaded.isCompatible(filter)) {
+                log.info("Redis中的已入库用户过滤器参数与配置不一致，重新扫描用户表");
+                return false;
+            }
+            swap(loaded);
+            int merged = mergeJournal(Math.max(savedAt - CLOCK_SKEW_MILLIS, 0));
+            log.info("已从Redis加载已入库用户过滤器, 合并写入日志: {}, 预计误判率: {}", merged, loaded.expectedFpp());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("从Redis加载已入库用户过滤器失败，改为扫描用户表: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 把写入日志中指定时间之后写入的id合并到当前过滤器
+     * @param since 起始时间(毫秒)
+     * @return 合并的id数量
+     */
+    private int mergeJournal(long since) {
+        Set<String> ids = stringRedisTemplate.opsForZSet()
+                .rangeByScore(RedisConstant.GITHUB_USER_FILTER_JOURNAL_KEY, since, Double.POSITIVE_INFINITY);
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        swapLock.readLock().lock();
+        try {
+            ids.forEach(id -> filter.put(Integer.parseInt(id)));
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        return ids.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        save();
+    }
+}
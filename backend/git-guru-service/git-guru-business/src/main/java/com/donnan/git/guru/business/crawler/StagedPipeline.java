@@ -0,0 +1,355 @@
+package com.donnan.git.guru.business.crawler;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分阶段并发处理流水线
+ * 每个阶段有自己的有界队列和工作线程数，下游处理不过来时上游在放入队列时阻塞(背压)，
+ * 网络、计算和数据库等不同类型的阶段可以同时进行。结束时输出每个阶段的吞吐量和繁忙程度。
+ * <pre>
+ * StagedPipeline.source("ingest", "discover", emitter -> ...)
+ *         .stage("enrich", 4, 100, (item, emitter) -> ...)
+ *         .batch("flush", 50)
+ *         .sink("persist", 1, 4, batch -> ...)
+ *         .run();
+ * </pre>
+ * @author Donnan
+ */
+@Slf4j
+public class StagedPipeline {
+
+    // 上游结束的标记
+    private static final Object END = new Object();
+
+    private final String name;
+
+    private final List<StageRunner> stages;
+
+    private StagedPipeline(String name, List<StageRunner> stages) {
+        this.name = name;
+        this.stages = stages;
+    }
+
+    /**
+     * 创建以数据源开头的流水线
+     * @param pipelineName 流水线名称，用于日志
+     * @param stageName 数据源阶段名称
+     * @param source 数据源，在单个线程上执行
+     */
+    public static <T> Builder<T> source(String pipelineName, String stageName, Source<T> source) {
+        Builder<T> builder = new Builder<>(pipelineName, new ArrayList<>());
+        builder.stages.add(new StageRunner(stageName, 1, 0, new Handler() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handle(Object item, Emitter<Object> emitter) throws Exception {
+                source.produce((Emitter<T>) emitter);
+            }
+        }));
+        return builder;
+    }
+
+    /**
+     * 执行流水线，阻塞到所有阶段处理完成
+     * @return 各阶段的统计
+     */
+    public List<StageStats> run() throws InterruptedException {
+        long start = System.nanoTime();
+        CountDownLatch finished = new CountDownLatch(stages.stream().mapToInt(stage -> stage.workers).sum());
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (int i = 0; i < stages.size(); i++) {
+                StageRunner stage = stages.get(i);
+                StageRunner next = i + 1 < stages.size() ? stages.get(i + 1) : null;
+                stage.stats.startedAt = System.nanoTime();
+                for (int w = 0; w < stage.workers; w++) {
+                    threads.execute(() -> {
+                        try {
+                            stage.work(next);
+                        } finally {
+                            finished.countDown();
+                        }
+                    });
+                }
+            }
+            finished.await();
+        } catch (InterruptedException e) {
+            threads.shutdownNow();
+            throw e;
+        } finally {
+            threads.shutdown();
+        }
+
+        List<StageStats> result = stages.stream().map(stage -> stage.stats).toList();
+        log.info("流水线 {} 执行完成, 耗时: {}ms", name, (System.nanoTime() - start) / 1_000_000);
+        result.forEach(stats -> log.info("流水线 {} 阶段 {}", name, stats));
+        return result;
+    }
+
+    /**
+     * 流水线构造器，T为当前最后一个阶段输出的数据类型
+     */
+    public static class Builder<T> {
+
+        private final String name;
+
+        private final List<StageRunner> stages;
+
+        private Builder(String name, List<StageRunner> stages) {
+            this.name = name;
+            this.stages = stages;
+        }
+
+        /**
+         * 添加处理阶段
+         * @param stageName 阶段名称
+         * @param workers 工作线程数
+         * @param capacity 输入队列容量
+         * @param stage 处理逻辑，每个输入可以输出任意个结果
+         */
+        public <R> Builder<R> stage(String stageName, int workers, int capacity, Stage<T, R> stage) {
+            stages.add(new StageRunner(stageName, workers, capacity, new Handler() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void handle(Object item, Emitter<Object> emitter) throws Exception {
+                    stage.process((T) item, (Emitter<R>) emitter);
+                }
+            }));
+            return new Builder<>(name, stages);
+        }
+
+        /**
+         * 把输入按数量攒成批次，上游结束时输出剩余不足一批的数据
+         * @param stageName 阶段名称
+         * @param size 批次大小
+         */
+        public Builder<List<T>> batch(String stageName, int size) {
+            stages.add(new StageRunner(stageName, 1, size * 2, new Handler() {
+                private List<Object> buffer = new ArrayList<>(size);
+
+                @Override
+                public void handle(Object item, Emitter<Object> emitter) throws Exception {
+                    buffer.add(item);
+                    if (buffer.size() >= size) {
+                        emitter.emit(buffer);
+                        buffer = new ArrayList<>(size);
+                    }
+                }
+
+                @Override
+                public void finish(Emitter<Object> emitter) throws Exception {
+                    if (!buffer.isEmpty()) {
+                        emitter.emit(buffer);
+                        buffer = new ArrayList<>(size);
+                    }
+                }
+            }));
+            return new Builder<>(name, stages);
+        }
+
+        /**
+         * 添加最后一个阶段
+         * @param stageName 阶段名称
+         * @param workers 工作线程数
+         * @param capacity 输入队列容量
+         * @param sink 处理逻辑
+         */
+        public StagedPipeline sink(String stageName, int workers, int capacity, Sink<T> sink) {
+            stages.add(new StageRunner(stageName, workers, capacity, new Handler() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void handle(Object item, Emitter<Object> emitter) throws Exception {
+                    sink.accept((T) item);
+                }
+            }));
+            return new StagedPipeline(name, stages);
+        }
+    }
+
+    /**
+     * 阶段的执行器，持有输入队列和统计
+     */
+    private static class StageRunner {
+
+        private final int workers;
+
+        private final BlockingQueue<Object> input;
+
+        private final Handler handler;
+
+        private final StageStats stats;
+
+        // 尚未结束的工作线程数，最后一个结束时通知下游
+        private final AtomicInteger running;
+
+        private StageRunner(String name, int workers, int capacity, Handler handler) {
+            this.workers = Math.max(workers, 1);
+            this.input = capacity > 0 ? new ArrayBlockingQueue<>(capacity) : null;
+            this.handler = handler;
+            this.stats = new StageStats(name);
+            this.running = new AtomicInteger(this.workers);
+        }
+
+        private void work(StageRunner next) {
+            Emitter<Object> emitter = item -> {
+                stats.emitted.incrementAndGet();
+                if (next != null) {
+                    // 下游队列满时阻塞，形成背压
+                    next.input.put(item);
+                }
+            };
+            try {
+                if (input == null) {
+                    timed(() -> handler.handle(null, emitter));
+                } else {
+                    while (true) {
+                        Object item = input.take();
+                        if (item == END) {
+                            break;
+                        }
+                        timed(() -> handler.handle(item, emitter));
+                    }
+                }
+                handler.finish(emitter);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("阶段 {} 结束时处理失败: {}", stats.name, e.getMessage(), e);
+            } finally {
+                if (running.decrementAndGet() == 0) {
+                    stats.finishedAt = System.nanoTime();
+                    if (next != null) {
+                        next.close();
+                    }
+                }
+            }
+        }
+
+        private void timed(Task task) throws InterruptedException {
+            long start = System.nanoTime();
+            try {
+                task.run();
+                stats.processed.incrementAndGet();
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                // 单条数据失败不影响整体流程
+                stats.failed.incrementAndGet();
+                log.warn("阶段 {} 处理失败: {}", stats.name, e.getMessage(), e);
+            } finally {
+                stats.busyNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * 上游全部结束，给每个工作线程发送结束标记
+         */
+        private void close() {
+            for (int i = 0; i < workers; i++) {
+                try {
+                    input.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 阶段统计
+     */
+    @Getter
+    public static class StageStats {
+
+        private final String name;
+
+        // 处理成功的输入数
+        private final AtomicLong processed = new AtomicLong();
+
+        // 处理失败的输入数
+        private final AtomicLong failed = new AtomicLong();
+
+        // 输出到下游的数量
+        private final AtomicLong emitted = new AtomicLong();
+
+        // 所有工作线程处理数据的累计耗时，包含因背压阻塞的时间
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        private volatile long startedAt;
+
+        private volatile long finishedAt;
+
+        private StageStats(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 每秒处理的输入数
+         */
+        public double getThroughput() {
+            long elapsed = (finishedAt > 0 ? finishedAt : System.nanoTime()) - startedAt;
+            return elapsed <= 0 ? 0 : processed.get() * 1e9 / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: 处理 %d, 失败 %d, 输出 %d, 吞吐 %.2f/s, 累计处理耗时 %dms",
+                    name, processed.get(), failed.get(), emitted.get(), getThroughput(), busyNanos.get() / 1_000_000);
+        }
+    }
+
+    /**
+     * 向下游输出数据，下游队列满时阻塞
+     */
+    @FunctionalInterface
+    public interface Emitter<T> {
+        void emit(T item) throws InterruptedException;
+    }
+
+    /**
+     * 数据源
+     */
+    @FunctionalInterface
+    public interface Source<T> {
+        void produce(Emitter<T> emitter) throws Exception;
+    }
+
+    /**
+     * 处理阶段
+     */
+    @FunctionalInterface
+    public interface Stage<T, R> {
+        void process(T item, Emitter<R> emitter) throws Exception;
+    }
+
+    /**
+     * 最后一个阶段
+     */
+    @FunctionalInterface
+    public interface Sink<T> {
+        void accept(T item) throws Exception;
+    }
+
+    private interface Handler {
+        void handle(Object item, Emitter<Object> emitter) throws Exception;
+
+        default void finish(Emitter<Object> emitter) throws Exception {
+        }
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+}
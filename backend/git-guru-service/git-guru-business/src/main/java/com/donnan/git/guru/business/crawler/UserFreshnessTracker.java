@@ -0,0 +1,215 @@
+package com.donnan.git.guru.business.crawler;
+
+import com.donnan.git.guru.business.constant.RedisConstant;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 已入库用户的新鲜度记录
+ * 在Redis中记录每个用户最近一次从GitHub刷新的时间，以及自上次刷新以来聊天中被问到的次数，
+ * 供刷新调度按 陈旧程度 × 热度 × 聊天需求 排序。刷新时间按时间排序保存，调度时只需取出最早刷新的一批用户。
+ * 聊天中问到的用户不一定已入库，访问计数最多保留 github.refresh.demand.max 个用户，超出时淘汰访问次数最少的用户；
+ * 刷新调度也会扣除没有入库的用户的计数。
+ * Redis不可用时不影响主流程。
+ * @author Donnan
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserFreshnessTracker {
+
+    /**
+     * KEYS[1]: 访问计数
+     * ARGV: 按 用户名, 扣除的次数 两个一组
+     */
+    private static final String CONSUME_SCRIPT = """
+            for i = 1, #ARGV, 2 do
+                local left = tonumber(redis.call('ZINCRBY', KEYS[1], -tonumber(ARGV[i + 1]), ARGV[i]))
+                if left <= 0 then
+                    redis.call('ZREM', KEYS[1], ARGV[i])
+                end
+            end
+            return 0
+            """;
+
+    private static final DefaultRedisScript<Long> CONSUME = new DefaultRedisScript<>(CONSUME_SCRIPT, Long.class);
+
+    /**
+     * KEYS[1]: 访问计数
+     * ARGV: 用户名, 最多保留的用户数
+     */
+    private static final String RECORD_SCRIPT = """
+            redis.call('ZINCRBY', KEYS[1], 1, ARGV[1])
+            local size = redis.call('ZCARD', KEYS[1])
+            local max = tonumber(ARGV[2])
+            if size > max then
+                redis.call('ZREMRANGEBYRANK', KEYS[1], 0, size - max - 1)
+            end
+            return 0
+            """;
+
+    private static final DefaultRedisScript<Long> RECORD = new DefaultRedisScript<>(RECORD_SCRIPT, Long.class);
+
+    // 访问计数最多保留的用户数
+    @Value("${github.refresh.demand.max:10000}")
+    private int maxDemand;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 记录一次聊天中对用户的访问，超过保留上限时淘汰访问次数最少的用户
+     */
+    public void recordDemand(String login) {
+        if (login == null || login.isBlank()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RECORD, List.of(RedisConstant.GITHUB_USER_DEMAND_KEY),
+                    login.trim().toLowerCase(), String.valueOf(maxDemand));
+        } catch (Exception e) {
+            log.debug("记录用户访问失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 自上次刷新以来访问次数最多的用户
+     * @return 小写用户名到访问次数的映射，最多 github.refresh.demand.max 个
+     */
+    public Map<String, Double> demand() {
+        Map<String, Double> demand = new HashMap<>();
+        try {
+            Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                    .reverseRangeWithScores(RedisConstant.GITHUB_USER_DEMAND_KEY, 0, maxDemand - 1);
+            if (tuples != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                    demand.put(tuple.getValue(), tuple.getScore());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("读取用户访问记录失败: {}", e.getMessage());
+        }
+        return demand;
+    }
+
+    /**
+     * 刷新后扣除刷新前读取到的访问计数，刷新期间新增的访问保留到下一轮
+     * @param consumed 小写用户名到刷新前访问次数的映射
+     */
+    public void consumeDemand(Map<String, Double> consumed) {
+        if (consumed.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>(consumed.size() * 2);
+        consumed.forEach((login, count) -> {
+            args.add(login);
+            args.add(String.valueOf(count));
+        });
+        try {
+            stringRedisTemplate.execute(CONSUME, List.of(RedisConstant.GITHUB_USER_DEMAND_KEY), args.toArray());
+        } catch (Exception e) {
+            log.warn("扣除用户访问记录失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录用户刚从GitHub获取过数据
+     */
+    public void markRefreshed(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        double now = System.currentTimeMillis();
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+        for (Integer id : ids) {
+            if (id != null) {
+                tuples.add(new DefaultTypedTuple<>(String.valueOf(id), now));
+            }
+        }
+        try {
+            stringRedisTemplate.opsForZSet().add(RedisConstant.GITHUB_USER_REFRESHED_KEY, tuples);
+        } catch (Exception e) {
+            log.warn("记录用户刷新时间失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录没有刷新时间的用户，刷新时间记为0，已有记录的用户不变
+     * 用于补齐记录刷新时间之前入库的用户
+     */
+    public void track(Collection<Integer> ids) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+        for (Integer id : ids) {
+            if (id != null) {
+                tuples.add(new DefaultTypedTuple<>(String.valueOf(id), 0.0));
+            }
+        }
+        if (tuples.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.opsForZSet().addIfAbsent(RedisConstant.GITHUB_USER_REFRESHED_KEY, tuples);
+    }
+
+    /**
+     * 是否已补齐所有用户的刷新时间，Redis不可用时按已补齐处理
+     */
+    public boolean backfilled() {
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.hasKey(RedisConstant.GITHUB_USER_REFRESHED_BACKFILLED_KEY));
+        } catch (Exception e) {
+            log.warn("读取用户刷新时间补齐标记失败: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    public void markBackfilled() {
+        stringRedisTemplate.opsForValue().set(RedisConstant.GITHUB_USER_REFRESHED_BACKFILLED_KEY, "1");
+    }
+
+    /**
+     * 获取最早刷新的用户
+     * @param refreshedBefore 只返回在该时间之前刷新的用户(毫秒)
+     * @param count 最多返回的用户数
+     * @return 按刷新时间从早到晚排列的用户id
+     */
+    public List<Integer> stalest(long refreshedBefore, int count) {
+        List<Integer> ids = new ArrayList<>();
+        try {
+            Set<String> members = stringRedisTemplate.opsForZSet().rangeByScore(
+                    RedisConstant.GITHUB_USER_REFRESHED_KEY, Double.NEGATIVE_INFINITY, refreshedBefore, 0, count);
+            if (members != null) {
+                members.forEach(member -> ids.add(Integer.valueOf(member)));
+            }
+        } catch (Exception e) {
+            log.warn("读取最早刷新的用户失败: {}", e.getMessage());
+        }
+        return ids;
+    }
+
+    /**
+     * 批量获取用户最近一次刷新的时间
+     * @return 与ids一一对应的毫秒时间戳，没有记录时为null
+     */
+    public List<Double> refreshedAt(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            List<Double> scores = stringRedisTemplate.opsForZSet().score(RedisConstant.GITHUB_USER_REFRESHED_KEY,
+                    ids.stream().map(String::valueOf).toArray());
+            if (scores != null) {
+                return scores;
+            }
+        } catch (Exception e) {
+            log.warn("读取用户刷新时间失败: {}", e.getMessage());
+        }
+        return Collections.nCopies(ids.size(), null);
+    }
+}
@@ -0,0 +1,214 @@
+package com.donnan.git.guru.business.crawler;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.donnan.git.guru.business.entity.github.pojo.GitHubUser;
+import com.donnan.git.guru.business.github.GitHubClient;
+import com.donnan.git.guru.business.mapper.GitHubUserMapper;
+import com.donnan.git.guru.business.service.GitHubService;
+import com.donnan.git.guru.lock.DistributeLock;
+import com.google.common.collect.Lists;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已入库用户的刷新调度
+ * 每轮按 陈旧程度 × 热度 × 聊天需求 计算优先级，用大小为K的小顶堆选出最需要刷新的用户重新抓取和评分，
+ * 热门和常被问到的用户保持新鲜，无需全量重新抓取。每轮刷新的数量同时受token剩余额度限制，避免挤占抓取任务。
+ * 候选用户只取Redis中刷新时间最早的 K × 候选倍数 个用户和聊天中被问到的用户，不扫描整张用户表；
+ * 因此不太陈旧的热门用户要等到足够陈旧时才会进入候选。首次运行时扫描一次用户表，补齐之前入库用户的刷新时间。
+ * 被问到但没有入库的用户不会成为候选，每轮扣除其访问计数，避免访问记录无限增长。
+ * @author Donnan
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserRefreshScheduler {
+
+    // 扫描用户表时每批读取的行数
+    private static final int SCAN_BATCH_SIZE = 5000;
+
+    // 每轮从最早刷新的用户中取出的候选数是刷新数量的倍数
+    private static final int CANDIDATE_FACTOR = 10;
+
+    // 按id或用户名查询候选用户时每批的数量
+    private static final int QUERY_BATCH_SIZE = 1000;
+
+    // 每轮最多刷新的用户数
+    @Value("${github.refresh.top.k:200}")
+    private int topK;
+
+    // 每轮最多使用的token剩余额度比例
+    @Value("${github.refresh.budget.share:0.3}")
+    private double budgetShare;
+
+    // 刷新后至少间隔多少小时才会再次刷新
+    @Value("${github.refresh.min.staleness.hours:24}")
+    private long minStalenessHours;
+
+    // 陈旧程度的上限(天)，没有刷新记录的用户按该值计算
+    @Value("${github.refresh.max.staleness.days:90}")
+    private double maxStalenessDays;
+
+    private final GitHubUserMapper gitHubUserMapper;
+
+    private final GitHubService gitHubService;
+
+    private final GitHubClient gitHubClient;
+
+    private final UserFreshnessTracker userFreshnessTracker;
+
+    /**
+     * 定时刷新，默认每小时执行一次，集群中只有一个节点执行
+     */
+    @Scheduled(cron = "${github.refresh.cron:0 30 * * * ?}")
+    @DistributeLock(scene = "github_user_refresh", key = "refresh", waitTime = 0, skipIfLocked = true)
+    public void refresh() {
+        // 按最坏情况(GraphQL失败回退到REST并翻满所有分页)估算每个用户的请求数
+        int affordable = (int) (gitHubClient.getRemainingRequests() * budgetShare / gitHubClient.maxRequestsPerUser());
+        int limit = Math.min(topK, affordable);
+        if (limit <= 0) {
+            log.info("token剩余额度不足，跳过本轮用户刷新");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        if (!userFreshnessTracker.backfilled()) {
+            backfill();
+        }
+        Map<String, Double> demand = userFreshnessTracker.demand();
+        Map<String, Double> unmatched = new HashMap<>(demand);
+        List<Candidate> selected = selectStalest(limit, demand, unmatched);
+        // 没有入库的用户不会被刷新，扣除其计数
+        userFreshnessTracker.consumeDemand(unmatched);
+        if (selected.isEmpty()) {
+            log.info("没有需要刷新的用户");
+            return;
+        }
+
+        List<GitHubUser> users = selected.stream().map(Candidate::user).toList();
+        gitHubService.refreshUsers(users);
+
+        // 刷新失败的用户同样记录，避免每轮都选中同一批失败的用户
+        userFreshnessTracker.markRefreshed(users.stream().map(GitHubUser::getId).toList());
+        Map<String, Double> consumed = new HashMap<>();
+        for (GitHubUser user : users) {
+            String login = user.getLogin() == null ? null : user.getLogin().toLowerCase();
+            if (login != null && demand.containsKey(login)) {
+                consumed.put(login, demand.get(login));
+            }
+        }
+        userFreshnessTracker.consumeDemand(consumed);
+        log.info("本轮刷新{}个用户, 最高优先级: {}, 耗时: {}ms",
+                users.size(), String.format("%.1f", selected.get(0).priority()), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 从最早刷新的用户和被问到的用户中选出优先级最高的limit个用户
+     * @param demand 小写用户名到访问次数的映射
+     * @param unmatched 传入demand的副本，返回时只剩下用户表中不存在的用户
+     * @return 按优先级从高到低排列的用户
+     */
+    private List<Candidate> selectStalest(int limit, Map<String, Double> demand, Map<String, Double> unmatched) {
+        long now = System.currentTimeMillis();
+        long refreshedBefore = now - TimeUnit.HOURS.toMillis(minStalenessHours);
+
+        Map<Integer, GitHubUser> candidates = new LinkedHashMap<>();
+        List<Integer> stalest = userFreshnessTracker.stalest(refreshedBefore, limit * CANDIDATE_FACTOR);
+        for (List<Integer> ids : Lists.partition(stalest, QUERY_BATCH_SIZE)) {
+            gitHubUserMapper.selectList(candidateQuery().in(GitHubUser::getId, ids))
+                    .forEach(user -> candidates.put(user.getId(), user));
+        }
+        for (List<String> logins : Lists.partition(new ArrayList<>(demand.keySet()), QUERY_BATCH_SIZE)) {
+            for (GitHubUser user : gitHubUserMapper.selectList(candidateQuery().in(GitHubUser::getLogin, logins))) {
+                candidates.put(user.getId(), user);
+                if (user.getLogin() != null) {
+                    unmatched.remove(user.getLogin().toLowerCase());
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        List<GitHubUser> users = new ArrayList<>(candidates.values());
+        List<Double> refreshedAt = userFreshnessTracker.refreshedAt(users.stream().map(GitHubUser::getId).toList());
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(Comparator.comparingDouble(Candidate::priority));
+        for (int i = 0; i < users.size(); i++) {
+            GitHubUser user = users.get(i);
+            Double refreshed = refreshedAt.get(i);
+            if (refreshed != null && refreshed > refreshedBefore) {
+                continue;
+            }
+            double stalenessDays = refreshed == null ? maxStalenessDays
+                    : Math.min((now - refreshed) / TimeUnit.DAYS.toMillis(1), maxStalenessDays);
+            double popularity = Math.log(2 + (user.getFollowers() == null ? 0 : user.getFollowers())) / Math.log(2);
+            double requests = user.getLogin() == null ? 0 : demand.getOrDefault(user.getLogin().toLowerCase(), 0.0);
+            double priority = stalenessDays * popularity * (1 + requests);
+
+            if (heap.size() < limit) {
+                heap.offer(new Candidate(user, priority));
+            } else if (priority > heap.peek().priority()) {
+                heap.poll();
+                heap.offer(new Candidate(user, priority));
+            }
+        }
+
+        List<Candidate> selected = new ArrayList<>(heap);
+        selected.sort(Comparator.comparingDouble(Candidate::priority).reversed());
+        return selected;
+    }
+
+    private LambdaQueryWrapper<GitHubUser> candidateQuery() {
+        return new LambdaQueryWrapper<GitHubUser>()
+                .select(GitHubUser::getId, GitHubUser::getLogin, GitHubUser::getFollowers);
+    }
+
+    /**
+     * 按主键分批扫描用户表，为没有刷新时间的用户补上记录，只在首次运行时执行
+     */
+    private void backfill() {
+        try {
+            int lastId = Integer.MIN_VALUE;
+            long count = 0;
+            while (true) {
+                List<Object> ids = gitHubUserMapper.selectObjs(new LambdaQueryWrapper<GitHubUser>()
+                        .select(GitHubUser::getId)
+                        .gt(GitHubUser::getId, lastId)
+                        .orderByAsc(GitHubUser::getId)
+                        .last("LIMIT " + SCAN_BATCH_SIZE));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                List<Integer> page = ids.stream().map(id -> ((Number) id).intValue()).toList();
+                userFreshnessTracker.track(page);
+                lastId = page.get(page.size() - 1);
+                count += page.size();
+                if (ids.size() < SCAN_BATCH_SIZE) {
+                    break;
+                }
+            }
+            userFreshnessTracker.markBackfilled();
+            log.info("已补齐{}个用户的刷新时间记录", count);
+        } catch (Exception e) {
+            log.warn("补齐用户刷新时间记录失败，下轮重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 刷新候选用户
+     */
+    private record Candidate(GitHubUser user, double priority) {
+    }
+}
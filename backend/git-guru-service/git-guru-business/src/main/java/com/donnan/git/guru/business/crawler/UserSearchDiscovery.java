@@ -0,0 +1,219 @@
+package com.donnan.git.guru.business.crawler;
+
+import com.donnan.git.guru.business.constant.RedisConstant;
+import com.donnan.git.guru.business.entity.github.dto.GitHubUserDto;
+import com.donnan.git.guru.business.entity.github.dto.GitHubUserSearchDto;
+import com.donnan.git.guru.business.github.GitHubClient;
+import com.donnan.git.guru.lock.DistributeLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于搜索接口发现GitHub用户
+ * 随机since采样到的大多是没有仓库的空账号，每个空账号还要再花三次请求才能被跳过。
+ * 这里用 /search/users 直接筛选有一定仓库数和关注者的用户，搜索接口最多只返回前1000条，
+ * 因此按关注者区间和注册时间窗口切分搜索范围：结果超过1000条时缩小时间窗口，结果较少时扩大时间窗口。
+ * 游标(关注者区间、时间窗口、页码、页内偏移)保存在Redis中，每次抓取从上次的位置继续。
+ * 多个节点同时抓取时，读取游标、搜索和保存游标在分布式锁内完成，每个节点拿到不同的搜索页，
+ * 不会重复搜索和补全同一批用户。
+ * @author Donnan
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserSearchDiscovery {
+
+    // 搜索接口最多能翻到的结果数
+    private static final int SEARCH_RESULT_CAP = 1000;
+
+    // 每页条数，游标中的页码基于该值，不能随意修改
+    private static final int PER_PAGE = 100;
+
+    // 时间窗口的最大天数
+    private static final int MAX_WINDOW_DAYS = 365;
+
+    // 单次发现最多额外消耗的搜索请求数(用于调整时间窗口)，搜索接口每分钟只有30次额度
+    private static final int MAX_EXTRA_CALLS = 10;
+
+    // 发现方式，search为搜索接口，random为随机since采样
+    @Value("${github.crawler.discovery.mode:search}")
+    private String mode;
+
+    // 关注者区间，按顺序轮流搜索
+    @Value("${github.crawler.search.bands:1000..*,200..999,50..199,10..49}")
+    private String bands;
+
+    // 最少公开仓库数
+    @Value("${github.crawler.search.min.repos:5}")
+    private int minRepos;
+
+    // 限定的编程语言，为空时不限
+    @Value("${github.crawler.search.language:}")
+    private String language;
+
+    // 注册时间的起点
+    @Value("${github.crawler.search.start:2008-01-01}")
+    private String startDate;
+
+    // 初始时间窗口天数
+    @Value("${github.crawler.search.window.days:30}")
+    private int initialWindowDays;
+
+    private final GitHubClient gitHubClient;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // Redis不可用时使用本地游标
+    private Cursor localCursor;
+
+    /**
+     * 发现新的候选用户
+     * @param count 需要的用户数量
+     * @return 候选用户，可能少于需要的数量
+     */
+    @DistributeLock(scene = "github_user_discovery", key = "search")
+    public synchronized List<GitHubUserDto> discover(int count) {
+        if (!"search".equalsIgnoreCase(mode)) {
+            return gitHubClient.getRandomUserByPage(count);
+        }
+
+        String[] bandList = StringUtils.split(bands, ',');
+        Cursor cursor = loadCursor();
+        List<GitHubUserDto> users = new ArrayList<>();
+        int calls = 0;
+        int maxCalls = (count + PER_PAGE - 1) / PER_PAGE + MAX_EXTRA_CALLS;
+
+        while (users.size() < count && calls < maxCalls) {
+            if (cursor.from.isAfter(LocalDate.now())) {
+                // 当前关注者区间已搜索完，切换到下一个区间
+                cursor.band = (cursor.band + 1) % bandList.length;
+                cursor.from = LocalDate.parse(startDate);
+                cursor.days = initialWindowDays;
+                cursor.page = 1;
+                cursor.offset = 0;
+                continue;
+            }
+
+            String query = buildQuery(bandList[cursor.band % bandList.length].trim(), cursor);
+            GitHubUserSearchDto result = gitHubClient.searchUsers(query, cursor.page);
+            calls++;
+            if (result == null || result.getItems() == null) {
+                // 搜索失败(一般是额度用完)，保留游标下次继续
+                break;
+            }
+
+            int total = result.getTotalCount() == null ? 0 : result.getTotalCount();
+            if (cursor.page == 1 && cursor.offset == 0 && total > SEARCH_RESULT_CAP && cursor.days > 1) {
+                // 超过1000条时后面的结果翻不到，缩小时间窗口
+                cursor.days = Math.max(1, cursor.days / 2);
+                continue;
+            }
+
+            List<GitHubUserDto> items = result.getItems();
+            int end = Math.min(items.size(), cursor.offset + count - users.size());
+            if (cursor.offset < end) {
+                users.addAll(items.subList(cursor.offset, end));
+            }
+
+            if (end < items.size()) {
+                // 本页还有剩余，下次从页内偏移处继续
+                cursor.offset = end;
+            } else if (items.size() == PER_PAGE && cursor.page * PER_PAGE < Math.min(total, SEARCH_RESULT_CAP)) {
+                cursor.page++;
+                cursor.offset = 0;
+            } else {
+                // 当前时间窗口已取完，滑动到下一个窗口，结果较少时扩大窗口
+                cursor.from = cursor.from.plusDays(cursor.days);
+                if (total < SEARCH_RESULT_CAP / 4) {
+                    cursor.days = Math.min(cursor.days * 2, MAX_WINDOW_DAYS);
+                }
+                cursor.page = 1;
+                cursor.offset = 0;
+            }
+        }
+
+        saveCursor(cursor);
+        log.info("通过搜索接口发现{}个候选用户，消耗{}次搜索请求，当前游标: {}", users.size(), calls, cursor);
+        return users;
+    }
+
+    private String buildQuery(String band, Cursor cursor) {
+        StringBuilder query = new StringBuilder("type:user")
+                .append(" repos:>=").append(minRepos)
+                .append(" followers:").append(band)
+                .append(" created:").append(cursor.from).append("..").append(cursor.from.plusDays(cursor.days - 1));
+        if (StringUtils.isNotBlank(language)) {
+            query.append(" language:").append(language.trim());
+        }
+        return query.toString();
+    }
+
+    private Cursor loadCursor() {
+        try {
+            Map<Object, Object> stored = stringRedisTemplate.opsForHash().entries(RedisConstant.GITHUB_DISCOVERY_CURSOR_KEY);
+            if (!stored.isEmpty()) {
+                Cursor cursor = new Cursor();
+                cursor.band = Integer.parseInt((String) stored.get("band"));
+                cursor.from = LocalDate.parse((String) stored.get("from"));
+                cursor.days = Integer.parseInt((String) stored.get("days"));
+                cursor.page = Integer.parseInt((String) stored.get("page"));
+                cursor.offset = Integer.parseInt((String) stored.get("offset"));
+                return cursor;
+            }
+        } catch (Exception e) {
+            log.warn("读取用户发现游标失败，使用本地游标: {}", e.getMessage());
+        }
+        if (localCursor == null) {
+            localCursor = new Cursor();
+            localCursor.from = LocalDate.parse(startDate);
+            localCursor.days = initialWindowDays;
+        }
+        return localCursor;
+    }
+
+    private void saveCursor(Cursor cursor) {
+        localCursor = cursor;
+        Map<String, String> fields = new HashMap<>();
+        fields.put("band", String.valueOf(cursor.band));
+        fields.put("from", cursor.from.toString());
+        fields.put("days", String.valueOf(cursor.days));
+        fields.put("page", String.valueOf(cursor.page));
+        fields.put("offset", String.valueOf(cursor.offset));
+        try {
+            stringRedisTemplate.opsForHash().putAll(RedisConstant.GITHUB_DISCOVERY_CURSOR_KEY, fields);
+        } catch (Exception e) {
+            log.warn("保存用户发现游标失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 搜索游标
+     */
+    private static class Cursor {
+        // 关注者区间序号
+        private int band;
+        // 时间窗口起点
+        private LocalDate from;
+        // 时间窗口天数
+        private int days;
+        // 页码，从1开始
+        private int page = 1;
+        // 页内已取到的位置
+        private int offset;
+
+        @Override
+        public String toString() {
+            return "band=" + band + ", created=" + from + "+" + days + "d, page=" + page + ", offset=" + offset;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.donnan.git.guru.business.entity.github.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Git Trees API 返回的目录树
+ * @author Donnan
+ */
+@Data
+public class GitHubTreeDto {
+
+    private String sha;
+    private String url;
+    private List<Entry> tree;
+    // 条目过多时GitHub会截断结果
+    private boolean truncated;
+
+    @Data
+    public static class Entry {
+        private String path;
+        private String mode;
+        // blob 或 tree
+        private String type;
+        private String sha;
+        private int size;
+        private String url;
+    }
+}
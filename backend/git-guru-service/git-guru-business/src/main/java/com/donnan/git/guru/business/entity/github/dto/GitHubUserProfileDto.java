@@ -0,0 +1,21 @@
+package com.donnan.git.guru.business.entity.github.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * GraphQL批量获取的用户画像(基本信息 + 主要仓库 + 贡献统计)
+ * @author Donnan
+ */
+@Data
+public class GitHubUserProfileDto {
+    private GitHubUserInfoDto userInfo;
+    private List<GitHubRepoDto> repos;
+
+    // 最近90天的贡献统计
+    private int commits;
+    private int prs;
+    private int issues;
+    private int prReviews;
+}
@@ -0,0 +1,18 @@
+package com.donnan.git.guru.business.entity.github.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 用户搜索结果
+ * @author Donnan
+ */
+@Data
+public class GitHubUserSearchDto {
+    // 匹配的用户总数，搜索接口最多只能翻到前1000条
+    private Integer totalCount;
+    // 搜索超时时结果可能不完整
+    private boolean incompleteResults;
+    private List<GitHubUserDto> items;
+}
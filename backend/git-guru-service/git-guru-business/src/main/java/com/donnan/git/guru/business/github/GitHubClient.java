@@ -1,30 +1,77 @@
 package com.donnan.git.guru.business.github;
 
-import com.alibaba.fastjson.JSON;
 import com.donnan.git.guru.business.entity.github.dto.*;
 import com.donnan.git.guru.business.entity.github.pojo.GitHubRepo;
+import com.donnan.git.guru.limiter.AdaptiveConcurrencyLimiter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
-import org.apache.http.util.EntityUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author Donnan
@@ -34,10 +81,42 @@ import java.util.stream.Collectors;
 @Data
 public class GitHubClient {
 
+    // 被限流后的最大重试次数
+    private static final int MAX_RATE_LIMIT_RETRIES = 3;
+
+    // 获取仓库文档时目录的最大递归深度
+    private static final int REPO_DOCS_MAX_DEPTH = 3;
+
+    // 分页请求每页的条数(GitHub允许的最大值)
+    private static final int PER_PAGE = 100;
+
+    // 搜索接口每个token每分钟的额度
+    private static final int SEARCH_LIMIT = 30;
+
+    // 搜索接口每次从Redis租用的额度
+    private static final int SEARCH_LEASE_SIZE = 2;
+
+    // 磁盘缓存中保存的响应头，用于条件请求和分页
+    private static final List<String> DISK_CACHE_HEADERS = List.of("ETag", "Last-Modified", "Link");
+
+    // 原始响应在请求合并中的key前缀，与解析后的结果区分开
+    private static final String RAW_KEY_PREFIX = "raw:";
+
+    // raw媒体类型请求在请求合并中的key前缀
+    private static final String RAW_MEDIA_KEY_PREFIX = "media:";
+
     // 最大的用户数
     @Value("${github.client.user.max.num}")
     private int userMaxNum;
 
+    // GitHub REST API地址，压测时可指向本地的模拟服务
+    @Value("${github.client.base.url:https://api.github.com}")
+    private String baseUrl;
+
+    // GitHub GraphQL API地址，为空时使用 {base.url}/graphql
+    @Value("${github.client.graphql.url:}")
+    private String graphqlUrl;
+
     // 访问github，加速token
     @Value("${github.client.token}")
     private List<String> authGitHub;
@@ -46,20 +125,191 @@ public class GitHubClient {
     @Value("${github.client.thread.num}")
     private int threadNum;
 
+    // 单个仓库获取文档的总超时时间(秒)
+    @Value("${github.client.repo.docs.timeout:60}")
+    private long repoDocsTimeoutSeconds;
+
+    // 单个仓库获取文档的最大并发请求数
+    @Value("${github.client.repo.docs.concurrency:5}")
+    private int repoDocsConcurrency;
+
+    // 分页请求最多加载的页数
+    @Value("${github.client.page.limit:3}")
+    private int pageLimit;
+
+    // 文档内容缓存的最大字符数
+    @Value("${github.client.blob.cache.max.chars:67108864}")
+    private long blobCacheMaxChars;
+
+    // 单个文档文件读取的最大字节数
+    @Value("${github.client.file.max.bytes:1048576}")
+    private int fileMaxBytes;
+
+    // 需要获取的文档数达到该值时改为下载tarball，小于等于0表示不使用tarball
+    @Value("${github.client.tarball.doc.threshold:30}")
+    private int tarballDocThreshold;
+
+    // 使用tarball的仓库大小上限(字节)，超过时仍然逐个获取文档
+    @Value("${github.client.tarball.max.repo.bytes:268435456}")
+    private long tarballMaxRepoBytes;
+
+    // 单个tarball提取文档的总字节预算
+    @Value("${github.client.tarball.budget.bytes:33554432}")
+    private long tarballBudgetBytes;
+
+    // 条件请求缓存的最大条目数
+    @Value("${github.client.cache.max.size:10000}")
+    private long cacheMaxSize;
+
+    // 交互请求(聊天工具调用)的最大并发数
+    @Value("${github.client.lane.interactive.concurrency:8}")
+    private int interactiveConcurrency;
+
+    // 后台请求(定时抓取)的最大并发数
+    @Value("${github.client.lane.background.concurrency:12}")
+    private int backgroundConcurrency;
+
+    // 每个token为交互请求保留的额度比例
+    @Value("${github.client.lane.interactive.reserve:0.2}")
+    private double interactiveReserveRatio;
+
+    // 自适应并发数的初始值
+    @Value("${github.client.limiter.initial:10}")
+    private int limiterInitial;
+
+    // 自适应并发数的下限
+    @Value("${github.client.limiter.min:2}")
+    private int limiterMin;
+
+    // 自适应并发数的上限，不超过连接池的单路由连接数
+    @Value("${github.client.limiter.max:20}")
+    private int limiterMax;
+
+    // 是否通过Redis在集群内共享token额度
+    @Value("${github.client.token.ledger.enabled:true}")
+    private boolean tokenLedgerEnabled;
+
+    // 每次从Redis租用的请求数，越大Redis访问越少，节点间额度越不精确
+    @Value("${github.client.token.ledger.lease:20}")
+    private int tokenLeaseSize;
+
+    // 是否开启磁盘响应缓存
+    @Value("${github.client.disk.cache.enabled:false}")
+    private boolean diskCacheEnabled;
+
+    // 磁盘响应缓存目录
+    @Value("${github.client.disk.cache.dir:./data/github-cache}")
+    private String diskCacheDir;
+
+    // 磁盘响应缓存有效记录的最大字节数
+    @Value("${github.client.disk.cache.max.bytes:1073741824}")
+    private long diskCacheMaxBytes;
+
+    // 磁盘响应缓存单个段文件的最大字节数，超过该大小的响应不写入磁盘
+    @Value("${github.client.disk.cache.segment.bytes:67108864}")
+    private long diskCacheSegmentBytes;
+
+    // 回放模式，只从磁盘缓存读取响应，不访问GitHub
+    @Value("${github.client.disk.cache.replay:false}")
+    private boolean replay;
+
+    // 是否为交互请求开启对冲，超过近期延迟分位数仍未返回时用另一个token再发一次
+    @Value("${github.client.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    // 触发对冲的延迟分位数
+    @Value("${github.client.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    // 对冲请求占交互请求的最大比例，保护token额度
+    @Value("${github.client.hedge.max.ratio:0.05}")
+    private double hedgeMaxRatio;
+
+    // 延迟样本不足时的对冲等待时长(毫秒)
+    @Value("${github.client.hedge.default.delay:1000}")
+    private long hedgeDefaultDelayMillis;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    // 请求监控指标
+    private GitHubMetrics metrics;
+
     private CloseableHttpClient httpClient;
 
+    // 异步HTTP客户端，拥有独立的连接池
+    private OkHttpClient asyncHttpClient;
+
     private ExecutorService executor;
 
-    private Map<String, Integer> gitHubToken;
+    private GitHubTokenScheduler tokenScheduler;
+
+    // 交互请求和后台请求的并发通道
+    private GitHubRequestLanes requestLanes;
+
+    // 根据GitHub的限流和延迟反馈自动调整的并发限制
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    // GraphQL额度按点数单独计算，单独调度
+    private GitHubTokenScheduler graphqlTokenScheduler;
+
+    // 搜索接口的额度独立于其他REST接口，单独调度
+    private GitHubTokenScheduler searchTokenScheduler;
+
+    private GitHubResponseCache responseCache;
+
+    private GitHubSingleFlight singleFlight;
+
+    // 文档内容缓存，key为blob SHA，内容不变时SHA不变
+    private Cache<String, String> blobContentCache;
+
+    // 磁盘响应缓存，未开启时为null
+    private GitHubDiskCache diskCache;
+
+    // 交互请求的对冲策略
+    private GitHubHedgePolicy hedgePolicy;
+
+    // 对冲请求的执行线程，每一路请求占用一个虚拟线程
+    private ExecutorService hedgeExecutor;
 
     @PostConstruct
     public void init() {
-        // 创建连接池管理器
-        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        this.baseUrl = StringUtils.removeEnd(baseUrl, "/");
+        if (StringUtils.isBlank(graphqlUrl)) {
+            this.graphqlUrl = baseUrl + "/graphql";
+        }
+
+        this.metrics = new GitHubMetrics(meterRegistry);
+
+        // 创建连接池管理器，记录获取连接的等待时间
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager() {
+            @Override
+            public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+                ConnectionRequest request = super.requestConnection(route, state);
+                return new ConnectionRequest() {
+                    @Override
+                    public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                            throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                        long start = System.nanoTime();
+                        try {
+                            return request.get(timeout, timeUnit);
+                        } finally {
+                            metrics.recordLeaseWait(System.nanoTime() - start);
+                        }
+                    }
+
+                    @Override
+                    public boolean cancel() {
+                        return request.cancel();
+                    }
+                };
+            }
+        };
         // 设置最大连接数
         connectionManager.setMaxTotal(100);
-        // 设置每个路由的最大连接数
-        connectionManager.setDefaultMaxPerRoute(20);
+        // 设置每个路由的最大连接数，交互和后台两个通道各自的并发数之和
+        connectionManager.setDefaultMaxPerRoute(interactiveConcurrency + backgroundConcurrency);
 
         // 请求配置
         RequestConfig requestConfig = RequestConfig.custom()
@@ -74,13 +324,94 @@ public class GitHubClient {
                 .setDefaultRequestConfig(requestConfig)
                 .build();
 
-        this.executor = Executors.newFixedThreadPool(threadNum);
+        // 创建异步HttpClient，回调运行在虚拟线程上
+        Dispatcher dispatcher = new Dispatcher(Executors.newVirtualThreadPerTaskExecutor());
+        dispatcher.setMaxRequests(100);
+        dispatcher.setMaxRequestsPerHost(20);
+        this.asyncHttpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(20, 5, TimeUnit.MINUTES))
+                .connectTimeout(5, TimeUnit.SECONDS)
+                .readTimeout(15, TimeUnit.SECONDS)
+                .build();
+
+        // 线程池指标包含排队任务数、活跃线程数和任务耗时
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, Executors.newFixedThreadPool(threadNum),
+                "github.client.executor");
+
+        // 初始化GitHubToken调度器
+        this.tokenScheduler = new GitHubTokenScheduler(authGitHub, interactiveReserveRatio,
+                tokenLedgerEnabled ? new RedisGitHubTokenLedger(stringRedisTemplate, "rest") : null, tokenLeaseSize);
+        this.graphqlTokenScheduler = new GitHubTokenScheduler(authGitHub, interactiveReserveRatio,
+                tokenLedgerEnabled ? new RedisGitHubTokenLedger(stringRedisTemplate, "graphql") : null, tokenLeaseSize);
+        // 搜索接口每分钟只有30次额度且只有后台发现使用，不为交互请求保留额度，每次只租用少量额度
+        this.searchTokenScheduler = new GitHubTokenScheduler(authGitHub, SEARCH_LIMIT, 0,
+                tokenLedgerEnabled ? new RedisGitHubTokenLedger(stringRedisTemplate, "search", SEARCH_LIMIT) : null,
+                SEARCH_LEASE_SIZE);
+
+        // 初始化请求通道
+        this.requestLanes = new GitHubRequestLanes(interactiveConcurrency, backgroundConcurrency);
+
+        // 初始化自适应并发限制
+        this.concurrencyLimiter = new AdaptiveConcurrencyLimiter("github", limiterInitial, limiterMin, limiterMax);
+
+        // 初始化对冲策略
+        this.hedgePolicy = new GitHubHedgePolicy(hedgePercentile, hedgeMaxRatio, hedgeDefaultDelayMillis);
+        this.hedgeExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
-        // 初始化GitHubToken
-        this.gitHubToken = new HashMap<>();
-        for (int i = 0; i < authGitHub.size(); i++) {
-            gitHubToken.put(authGitHub.get(i), 0);
+        // 初始化条件请求缓存
+        this.responseCache = new GitHubResponseCache(cacheMaxSize);
+
+        // 初始化请求合并
+        this.singleFlight = new GitHubSingleFlight();
+
+        // 初始化文档内容缓存，按字符数限制大小
+        this.blobContentCache = Caffeine.newBuilder()
+                .maximumWeight(blobCacheMaxChars)
+                .weigher((String sha, String content) -> content.length())
+                .build();
+
+        // 初始化磁盘响应缓存，回放模式依赖磁盘缓存
+        if (diskCacheEnabled || replay) {
+            try {
+                this.diskCache = new GitHubDiskCache(Paths.get(diskCacheDir), diskCacheMaxBytes, diskCacheSegmentBytes);
+            } catch (IOException e) {
+                throw new RuntimeException("初始化GitHub磁盘缓存失败", e);
+            }
+            if (replay) {
+                log.info("GitHub客户端处于回放模式，所有响应只从磁盘缓存读取");
+            }
         }
+
+        bindMetrics(connectionManager);
+    }
+
+    /**
+     * 注册连接池、并发限制、token额度和缓存的监控指标
+     * 只增不减的累计次数注册为计数器，监控系统按计数器处理重启后的归零
+     */
+    private void bindMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        Gauge.builder("github.client.connections.leased", connectionManager, m -> m.getTotalStats().getLeased())
+                .description("连接池中正在使用的连接数").register(meterRegistry);
+        Gauge.builder("github.client.connections.pending", connectionManager, m -> m.getTotalStats().getPending())
+                .description("等待获取连接的请求数").register(meterRegistry);
+        Gauge.builder("github.client.limiter.limit", concurrencyLimiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("自适应并发限制的当前值").register(meterRegistry);
+        Gauge.builder("github.client.limiter.inflight", concurrencyLimiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("占用自适应并发许可的请求数").register(meterRegistry);
+        Gauge.builder("github.client.lane.inflight", requestLanes, GitHubRequestLanes::getInteractiveInFlight)
+                .description("各通道正在进行的请求数").tag("lane", "interactive").register(meterRegistry);
+        Gauge.builder("github.client.lane.inflight", requestLanes, GitHubRequestLanes::getBackgroundInFlight)
+                .description("各通道正在进行的请求数").tag("lane", "background").register(meterRegistry);
+        FunctionCounter.builder("github.client.cache.not.modified", responseCache, GitHubResponseCache::getNotModifiedCount)
+                .description("条件请求返回304的次数").register(meterRegistry);
+        FunctionCounter.builder("github.client.single.flight.deduplicated", singleFlight, GitHubSingleFlight::getDeduplicatedCount)
+                .description("被合并的重复请求数").register(meterRegistry);
+        FunctionCounter.builder("github.client.hedged", hedgePolicy, GitHubHedgePolicy::getHedgedCount)
+                .description("发起的对冲请求数").register(meterRegistry);
+        metrics.bindTokenScheduler("rest", tokenScheduler);
+        metrics.bindTokenScheduler("graphql", graphqlTokenScheduler);
+        metrics.bindTokenScheduler("search", searchTokenScheduler);
     }
 
     /**
@@ -103,16 +434,12 @@ public class GitHubClient {
             for (int i = 0; i < pageCount; i++) {
                 // 获取随机起点
                 int randomStart = random.nextInt(this.userMaxNum);
-                String url = "https://api.github.com" + "/users?repos%3E0&since=" + randomStart + "&per_page=" + pageSize;
+                String url = baseUrl + "/users?since=" + randomStart + "&per_page=" + pageSize;
 
                 final String pageUrl = url;  // 用于lambda表达式的final变量
                 Future<List<GitHubUserDto>> future = executor.submit(() -> {
                     try {
-                        String response = getGitHubResource(pageUrl);
-                        if (response != null) {
-                            return JSON.parseArray(response, GitHubUserDto.class);
-                        }
-                        return null;
+                        return getGitHubResource(pageUrl, in -> GitHubJsonDecoder.decodeList(in, GitHubUserDto.class));
                     } catch (Exception e) {
                         log.error("获取GitHub用户失败，URL：{}，错误：{}", pageUrl, e.getMessage());
                         return null;
@@ -145,63 +472,129 @@ public class GitHubClient {
     }
 
     /**
-     * 根据用户名获取GitHub用户信息
-     * @param userName 用户名
-     * @return 用户信息JSON字符串
+     * 搜索GitHub用户，按注册时间升序排列，保证翻页结果稳定
+     * @param query 搜索条件，例如 type:user repos:>5 followers:10..49 created:2015-01-01..2015-01-31
+     * @param page 页码，从1开始，搜索接口最多只能翻到第10页
+     * @return 搜索结果，失败时返回null
      */
-    public GitHubUserInfoDto getUserInfo(String userName) {
+    public GitHubUserSearchDto searchUsers(String query, int page) {
+        String url = baseUrl + "/search/users?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8)
+                + "&sort=joined&order=asc&per_page=" + PER_PAGE + "&page=" + page;
         try {
-            String json = getGitHubResource("https://api.github.com" + "/users/" + userName);
-
-            if (json == null || StringUtils.isBlank(json)) {
+            GitHubResponse response = executeWithDiskCache(url, Collections.emptyMap(),
+                    in -> GitHubJsonDecoder.decodeObject(in, GitHubUserSearchDto.class), (headers, reader) ->
+                            execute(url, searchTokenScheduler, () -> {
+                                HttpGet request = new HttpGet(url);
+                                request.setHeader("Accept", "application/vnd.github.v3+json");
+                                headers.forEach(request::setHeader);
+                                return request;
+                            }, reader));
+            if (!response.isOk()) {
+                log.warn("搜索GitHub用户失败, 状态码: {}, 条件: {}", response.getStatusCode(), query);
                 return null;
             }
-
-            return JSON.parseObject(json, GitHubUserInfoDto.class);
+            return response.getContent();
         } catch (IOException e) {
-            log.error("请求GitHub API异常: {}", e.getMessage());
+            log.error("搜索GitHub用户异常: {}", e.getMessage());
             return null;
         }
     }
 
     /**
-     * 根据用户名获取GitHub用户的所有仓库
+     * 根据用户名获取GitHub用户信息
      * @param userName 用户名
-     * @return 用户的所有仓库列表
+     * @return 用户信息JSON字符串
      */
-    public List<GitHubRepoDto> getUserRepos(String userName) {
+    public GitHubUserInfoDto getUserInfo(String userName) {
         try {
-            String json = getGitHubResource("https://api.github.com" + "/users/" + userName + "/repos?type=all&sort=updated");
-
-            if (json == null || StringUtils.isBlank(json)) {
-                return null;
-            }
-
-            return JSON.parseArray(json, GitHubRepoDto.class);
+            return getCachedResource(baseUrl + "/users/" + userName, GitHubUserInfoDto.class);
         } catch (IOException e) {
             log.error("请求GitHub API异常: {}", e.getMessage());
             return null;
         }
     }
 
+    /**
+     * 根据用户名获取GitHub用户的所有仓库
+     * @param userName 用户名
+     * @return 用户的所有仓库列表(最多 github.client.page.limit 页)
+     */
+    public List<GitHubRepoDto> getUserRepos(String userName) {
+        return streamUserRepos(userName).toList();
+    }
+
     /**
      * 根据用户名获取GitHub用户的所有事件
      * @param userName 用户名
-     * @return 用户的所有事件列表
+     * @return 用户的所有事件列表(最多 github.client.page.limit 页)
      */
     public List<GitHubEventDto> getUserEvents(String userName) {
-        try {
-            String json = getGitHubResource("https://api.github.com" + "/users/" + userName + "/events");
+        return streamUserEvents(userName).toList();
+    }
 
-            if (json == null || StringUtils.isBlank(json)) {
-                return null;
-            }
+    /**
+     * 以流的方式获取GitHub用户的仓库，消费到下一页时才会发起请求
+     * @param userName 用户名
+     * @return 仓库流
+     */
+    public Stream<GitHubRepoDto> streamUserRepos(String userName) {
+        return streamPages(baseUrl + "/users/" + userName + "/repos?type=all&sort=updated&per_page=" + PER_PAGE,
+                GitHubRepoDto.class);
+    }
 
-            return JSON.parseArray(json, GitHubEventDto.class);
-        } catch (IOException e) {
-            log.error("请求GitHub API异常: {}", e.getMessage());
-            return null;
-        }
+    /**
+     * 以流的方式获取GitHub用户的事件，消费到下一页时才会发起请求
+     * @param userName 用户名
+     * @return 事件流
+     */
+    public Stream<GitHubEventDto> streamUserEvents(String userName) {
+        return streamPages(baseUrl + "/users/" + userName + "/events?per_page=" + PER_PAGE,
+                GitHubEventDto.class);
+    }
+
+    /**
+     * 以流的方式获取关注该用户的用户，消费到下一页时才会发起请求
+     * @param userName 用户名
+     * @return 关注者流
+     */
+    public Stream<GitHubUserDto> streamFollowers(String userName) {
+        return streamPages(baseUrl + "/users/" + userName + "/followers?per_page=" + PER_PAGE, GitHubUserDto.class);
+    }
+
+    /**
+     * 以流的方式获取该用户关注的用户，消费到下一页时才会发起请求
+     * @param userName 用户名
+     * @return 被关注的用户流
+     */
+    public Stream<GitHubUserDto> streamFollowing(String userName) {
+        return streamPages(baseUrl + "/users/" + userName + "/following?per_page=" + PER_PAGE, GitHubUserDto.class);
+    }
+
+    /**
+     * 按 Link: rel="next" 懒加载的分页流，每一页都走条件请求缓存
+     * @param firstUrl 第一页的URL
+     * @param type 元素类型
+     * @return 元素流
+     */
+    private <T> Stream<T> streamPages(String firstUrl, Class<T> type) {
+        GitHubPageIterator<T> iterator = new GitHubPageIterator<>(firstUrl, pageLimit,
+                url -> getCachedResponse(url, listReader(type), pageParser()));
+        return iterator.stream();
+    }
+
+    /**
+     * JSON数组的流式读取方式
+     */
+    private <T> ContentReader listReader(Class<T> type) {
+        return in -> GitHubJsonDecoder.decodeList(in, type);
+    }
+
+    /**
+     * 分页响应解析器，组合已解码的元素和Link响应头中的下一页
+     */
+    private <T> Function<GitHubResponse, GitHubPage<T>> pageParser() {
+        return response -> new GitHubPage<>(response.<List<T>>getContent(),
+                GitHubPage.parseNextUrl(response.getHeader("Link")));
     }
 
     /**
@@ -212,19 +605,70 @@ public class GitHubClient {
      */
     public GitHubRepoDto getGitHubRepo(String login, String repoName) {
         try {
-            String json = getGitHubResource("https://api.github.com" + "/repos/" + login + "/" + repoName);
-
-            if (json == null || StringUtils.isBlank(json)) {
-                return null;
-            }
-
-            return JSON.parseObject(json, GitHubRepoDto.class);
+            return getCachedResource(baseUrl + "/repos/" + login + "/" + repoName, GitHubRepoDto.class);
         } catch (IOException e) {
             log.error("请求GitHub API异常: {}", e.getMessage());
             return null;
         }
     }
 
+    /**
+     * 异步获取GitHub用户信息
+     * @param userName 用户名
+     * @return 用户信息，获取失败时为null
+     */
+    public CompletableFuture<GitHubUserInfoDto> getUserInfoAsync(String userName) {
+        return getCachedResourceAsync(baseUrl + "/users/" + userName, GitHubUserInfoDto.class)
+                .exceptionally(e -> {
+                    log.error("异步请求GitHub用户信息异常: {}", e.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * 异步获取GitHub用户的仓库(第一页)
+     * @param userName 用户名
+     * @return 用户的仓库列表，获取失败时为null
+     */
+    public CompletableFuture<List<GitHubRepoDto>> getUserReposAsync(String userName) {
+        return getCachedResponseAsync(baseUrl + "/users/" + userName + "/repos?type=all&sort=updated&per_page=" + PER_PAGE,
+                listReader(GitHubRepoDto.class), pageParser())
+                .thenApply(page -> page == null ? null : page.getItems())
+                .exceptionally(e -> {
+                    log.error("异步请求GitHub用户仓库异常: {}", e.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * 异步获取GitHub用户的事件(第一页)
+     * @param userName 用户名
+     * @return 用户的事件列表，获取失败时为null
+     */
+    public CompletableFuture<List<GitHubEventDto>> getUserEventsAsync(String userName) {
+        return getCachedResponseAsync(baseUrl + "/users/" + userName + "/events?per_page=" + PER_PAGE,
+                listReader(GitHubEventDto.class), pageParser())
+                .thenApply(page -> page == null ? null : page.getItems())
+                .exceptionally(e -> {
+                    log.error("异步请求GitHub用户事件异常: {}", e.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * 异步获取GitHub仓库信息
+     * @param login 用户名
+     * @param repoName 仓库名称
+     * @return 仓库信息，获取失败时为null
+     */
+    public CompletableFuture<GitHubRepoDto> getGitHubRepoAsync(String login, String repoName) {
+        return getCachedResourceAsync(baseUrl + "/repos/" + login + "/" + repoName, GitHubRepoDto.class)
+                .exceptionally(e -> {
+                    log.error("异步请求GitHub仓库信息异常: {}", e.getMessage());
+                    return null;
+                });
+    }
+
     public List<GitHubRepoContentDto> getRepoDocsByUser(String login) {
         List<GitHubRepoDto> repos = getUserRepos(login);
         if (repos == null || repos.isEmpty()) {
@@ -262,6 +706,8 @@ public class GitHubClient {
 
     /**
      * 获取仓库中的文档内容
+     * 整个仓库共用一个截止时间，目录和文件在虚拟线程上并行获取，同一仓库的并发请求数受限；
+     * 到达截止时间后取消所有未完成的任务，返回已获取到的文档。
      * @param login 用户名
      * @param repoName 仓库名称
      * @param path 路径，初始调用时传入null或空字符串
@@ -275,188 +721,1163 @@ public class GitHubClient {
             return new String[0];
         }
 
-        // 递归深度控制
-        final int MAX_DEPTH = 3;
-        if (depth > MAX_DEPTH) {
-            log.warn("达到最大递归深度({})，停止获取更深层级文档", MAX_DEPTH);
-            return new String[0];
-        }
-
-        try {
-            // 构建请求URL
-            String url = "https://api.github.com/repos/" + login + "/" + repoName + "/contents";
-            if (StringUtils.isNotBlank(path)) {
-                url += "/" + path;
-            }
-
-            String json = getGitHubResource(url);
-            if (StringUtils.isBlank(json)) {
-                return new String[0];
-            }
-
-            List<GitHubFileDto> repoList = JSON.parseArray(json, GitHubFileDto.class);
-            if (repoList == null || repoList.isEmpty()) {
-                return new String[0];
-            }
-
-            List<String> docs = new ArrayList<>();
-            List<Future<String[]>> dirFutures = new ArrayList<>();
-
-            // 并行处理目录
-            for (GitHubFileDto repo : repoList) {
-                if ("file".equals(repo.getType()) && isDocFile(repo.getName())) {
-                    // 处理文档文件
-                    String fileContent = getFileContent(repo.getUrl());
-                    if (fileContent != null) {
-                        docs.add(fileContent);
-                    }
-                } else if ("dir".equals(repo.getType()) && repo.getPath().contains("docs")) {
-                    // 并行处理子目录
-                    final String subPath = repo.getPath();
-                    Future<String[]> future = executor.submit(() ->
-                            getRepoDocs(login, repoName, subPath, depth + 1)
-                    );
-                    dirFutures.add(future);
-                }
-            }
-
-            // 收集子目录的结果
-            for (Future<String[]> future : dirFutures) {
-                try {
-                    String[] subDocs = future.get(30, java.util.concurrent.TimeUnit.SECONDS);
-                    if (subDocs != null && subDocs.length > 0) {
-                        Collections.addAll(docs, subDocs);
-                    }
-                } catch (Exception e) {
-                    log.error("获取子目录文档失败: {}", e.getMessage());
-                }
-            }
-
-            return docs.toArray(new String[0]);
-        } catch (IOException e) {
-            log.error("请求GitHub API获取仓库文档异常: {}, 仓库: {}/{}", e.getMessage(), login, repoName);
-            return new String[0];
-        }
+        RepoDocsTraversal traversal = new RepoDocsTraversal(login, repoName);
+        return traversal.run(path, depth);
     }
 
     /**
-     * 判断是否为文档文件
+     * 通过Git Trees API一次获取仓库中所有文档文件的路径和blob SHA
+     * 与逐目录遍历的范围一致：根目录以及路径包含docs的目录(最多3层)下的 .md / .txt 文件
+     * @param login 用户名
+     * @param repoName 仓库名称
+     * @return 文档文件列表，获取失败或结果被截断时返回null
      */
-    private boolean isDocFile(String fileName) {
-        return fileName.endsWith(".md") || fileName.endsWith(".txt");
+    public List<GitHubTreeDto.Entry> getRepoDocEntries(String login, String repoName) throws IOException {
+        GitHubTreeDto tree = getRepoTree(login, repoName);
+        return tree == null ? null : docEntries(tree);
     }
 
     /**
-     * 获取文件内容
+     * 递归获取仓库的完整目录树
+     * @return 目录树，获取失败或结果被截断时返回null
      */
-    private String getFileContent(String fileUrl) {
-        try {
-            String resource = getGitHubResource(fileUrl);
-            if (resource != null) {
-                GitHubFileDto content = JSON.parseObject(resource, GitHubFileDto.class);
-                if (content != null && content.getContent() != null) {
-                    String base64 = base64(content.getContent());
-                    return base64;
-                }
-            }
-        } catch (Exception e) {
-            log.warn("获取文件内容失败: {}", e.getMessage());
+    private GitHubTreeDto getRepoTree(String login, String repoName) throws IOException {
+        String url = baseUrl + "/repos/" + login + "/" + repoName + "/git/trees/HEAD?recursive=1";
+        GitHubTreeDto tree = getCachedResource(url, GitHubTreeDto.class);
+        if (tree == null || tree.getTree() == null) {
+            return null;
         }
-        return null;
+        if (tree.isTruncated()) {
+            log.info("仓库 {}/{} 的目录树被截断，回退到逐目录遍历", login, repoName);
+            return null;
+        }
+        return tree;
+    }
+
+    private List<GitHubTreeDto.Entry> docEntries(GitHubTreeDto tree) {
+        return tree.getTree().stream()
+                .filter(entry -> "blob".equals(entry.getType()) && isRepoDocPath(entry.getPath()))
+                .toList();
     }
 
     /**
-     * base64解码
-     * @param base64EncodedString
-     * @return
+     * 判断目录树中的路径是否属于需要加载的文档
      */
-    private String base64(String base64EncodedString) {
-        // 清理字符串，移除任何非法Base64字符
-        String cleanedString = base64EncodedString
-                .replace("\n", "")
-                .replace("\r", "")
-                .replace(" ", "");
-
-        try {
-            // 尝试使用标准Base64解码器解码
-            byte[] decodedBytes = Base64.getDecoder().decode(cleanedString);
-            return new String(decodedBytes);
-        } catch (IllegalArgumentException e) {
-            // 如果标准解码器失败，尝试URL安全的解码器
-            try {
-                byte[] decodedBytes = Base64.getUrlDecoder().decode(cleanedString);
-                return new String(decodedBytes);
-            } catch (IllegalArgumentException ex) {
-                ex.printStackTrace();
-                return null;
-            }
+    private boolean isRepoDocPath(String path) {
+        if (path == null || !isDocFile(path)) {
+            return false;
+        }
+        String[] segments = path.split("/");
+        // 根目录下的文档
+        if (segments.length == 1) {
+            return true;
         }
+        // 目录深度不超过3层，且所在目录路径包含docs
+        return segments.length - 1 <= REPO_DOCS_MAX_DEPTH && segments[0].contains("docs");
     }
 
     /**
-     * 通用的GitHub API资源获取方法
-     * @param resourcePath API资源路径
-     * @return API响应内容
+     * 一次仓库文档遍历
      */
-    private String getGitHubResource(String resourcePath) throws IOException {
-        if (gitHubToken == null || gitHubToken.isEmpty()) {
-            throw new IllegalStateException("GitHub认证token未配置");
-        }
+    private class RepoDocsTraversal {
 
-        // 选择使用次数最少的token
-        String selectedToken = null;
-        int minUsage = Integer.MAX_VALUE;
+        private final String login;
 
-        for (Map.Entry<String, Integer> entry : gitHubToken.entrySet()) {
-            if (entry.getValue() < 3000 && entry.getValue() < minUsage) {
-                minUsage = entry.getValue();
-                selectedToken = entry.getKey();
-            }
-        }
+        private final String repoName;
 
-        if (selectedToken == null) {
-            log.warn("所有GitHub token已达到使用上限");
-            return null;
-        }
+        // 整个仓库的截止时间
+        private final long deadline;
+
+        // 同一仓库的并发请求数限制
+        private final Semaphore permits;
+
+        private final ExecutorService scope = Executors.newVirtualThreadPerTaskExecutor();
+
+        private final Queue<String> docs = new ConcurrentLinkedQueue<>();
 
-        // 增加已选token的计数
-        gitHubToken.put(selectedToken, minUsage + 1);
+        // 未完成的任务数，归零时遍历结束
+        private final AtomicInteger pending = new AtomicInteger();
 
-        HttpGet request = new HttpGet(resourcePath);
-        request.setHeader("User-Agent", "Mozilla/5.0");
-        request.setHeader("Authorization", "token " + selectedToken);
-        request.setHeader("Accept", "application/vnd.github.v3+json");
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
 
-        try (CloseableHttpResponse response = httpClient.execute(request)) {
-            int statusCode = response.getStatusLine().getStatusCode();
+        private RepoDocsTraversal(String login, String repoName) {
+            this.login = login;
+            this.repoName = repoName;
+            this.deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(repoDocsTimeoutSeconds);
+            this.permits = new Semaphore(repoDocsConcurrency);
+        }
 
-            if (statusCode == 200) {
-                HttpEntity entity = response.getEntity();
-                return EntityUtils.toString(entity);
+        private String[] run(String path, int depth) {
+            if (StringUtils.isBlank(path) && depth == 0) {
+                // 从仓库根目录开始时，优先通过一次Trees API调用发现所有文档
+                fork(() -> {
+                    if (!discoverByTree()) {
+                        listDirectory(path, depth);
+                    }
+                });
             } else {
-                log.warn("获取GitHub资源失败, 状态码: {}, 资源路径: {}", statusCode, resourcePath);
-                return null;
+                fork(() -> listDirectory(path, depth));
             }
-        } catch (Exception e) {
-            log.error("请求GitHub API异常: {}", e.getMessage());
-            throw e;
+            try {
+                done.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.warn("获取仓库 {}/{} 文档超时，取消剩余任务，已获取{}个文档", login, repoName, docs.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("获取仓库 {}/{} 文档被中断", login, repoName);
+            } catch (ExecutionException e) {
+                log.error("获取仓库 {}/{} 文档异常: {}", login, repoName, e.getMessage());
+            } finally {
+                // 取消所有未完成的兄弟任务，不等待其结束
+                scope.shutdownNow();
+            }
+            return docs.toArray(new String[0]);
         }
-    }
 
-    @PreDestroy
-    public void close() {
-        if (httpClient != null) {
+        private void fork(Runnable task) {
+            pending.incrementAndGet();
             try {
-                httpClient.close();
+                // 子任务沿用发起遍历的请求优先级
+                scope.execute(GitHubRequestPriority.wrap(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        if (pending.decrementAndGet() == 0) {
+                            done.complete(null);
+                        }
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                // 遍历已经结束
+                pending.decrementAndGet();
+            }
+        }
+
+        /**
+         * 通过Trees API获取文档列表，按blob SHA获取内容，内容未变化的文件直接命中缓存；
+         * 需要获取的文档较多时改为下载一次tarball流式提取
+         * @return 是否成功，失败或结果被截断时回退到逐目录遍历
+         */
+        private boolean discoverByTree() {
+            GitHubTreeDto tree = fetch(() -> getRepoTree(login, repoName));
+            if (tree == null) {
+                return false;
+            }
+
+            Map<String, GitHubTreeDto.Entry> missing = new HashMap<>();
+            for (GitHubTreeDto.Entry entry : docEntries(tree)) {
+                String cachedContent = blobContentCache.getIfPresent(entry.getSha());
+                if (cachedContent != null) {
+                    docs.add(cachedContent);
+                } else {
+                    missing.put(entry.getPath(), entry);
+                }
+            }
+
+            if (shouldUseTarball(tree, missing.size())) {
+                Set<String> extracted = fetch(() -> extractFromTarball(missing));
+                if (extracted != null) {
+                    extracted.forEach(missing::remove);
+                }
+            }
+
+            // 逐个获取剩余的文档(tarball模式下只剩提取失败的部分)
+            for (GitHubTreeDto.Entry entry : missing.values()) {
+                fork(() -> {
+                    String fileContent = fetch(() -> getFileContent(entry.getUrl()));
+                    if (fileContent != null) {
+                        blobContentCache.put(entry.getSha(), fileContent);
+                        docs.add(fileContent);
+                    }
+                });
+            }
+            return true;
+        }
+
+        /**
+         * 需要获取的文档数达到阈值，且整个仓库不超过大小上限时使用tarball
+         */
+        private boolean shouldUseTarball(GitHubTreeDto tree, int missingCount) {
+            // 回放模式下tarball不经过磁盘缓存，直接逐个读取
+            if (replay || tarballDocThreshold <= 0 || missingCount < tarballDocThreshold) {
+                return false;
+            }
+            long repoBytes = 0;
+            for (GitHubTreeDto.Entry entry : tree.getTree()) {
+                repoBytes += entry.getSize();
+            }
+            return repoBytes <= tarballMaxRepoBytes;
+        }
+
+        /**
+         * 流式下载仓库tarball，只提取需要的文档
+         * @param wanted 路径到目录树条目的映射
+         * @return 成功提取的路径
+         */
+        private Set<String> extractFromTarball(Map<String, GitHubTreeDto.Entry> wanted) throws IOException {
+            String url = baseUrl + "/repos/" + login + "/" + repoName + "/tarball";
+            Set<String> extracted = new HashSet<>();
+            GitHubTarballReader reader = new GitHubTarballReader(fileMaxBytes, tarballBudgetBytes);
+
+            execute(url, tokenScheduler, () -> new HttpGet(url), in -> {
+                try {
+                    long used = reader.read(in, wanted::containsKey, (path, content) -> {
+                        blobContentCache.put(wanted.get(path).getSha(), content);
+                        docs.add(content);
+                        extracted.add(path);
+                        // 需要的文档都已提取时提前结束下载
+                        return extracted.size() < wanted.size();
+                    });
+                    log.info("仓库 {}/{} 通过tarball提取{}个文档，共{}字节", login, repoName, extracted.size(), used);
+                } catch (IOException e) {
+                    log.warn("仓库 {}/{} tarball读取中断: {}", login, repoName, e.getMessage());
+                }
+                return null;
+            });
+            return extracted;
+        }
+
+        private void listDirectory(String path, int depth) {
+            if (depth > REPO_DOCS_MAX_DEPTH) {
+                log.warn("达到最大递归深度({})，停止获取更深层级文档", REPO_DOCS_MAX_DEPTH);
+                return;
+            }
+
+            // 构建请求URL
+            String url = baseUrl + "/repos/" + login + "/" + repoName + "/contents";
+            if (StringUtils.isNotBlank(path)) {
+                url += "/" + path;
+            }
+
+            final String dirUrl = url;
+            List<GitHubFileDto> repoList = fetch(() -> getGitHubResource(dirUrl, listReader(GitHubFileDto.class)));
+            if (repoList == null || repoList.isEmpty()) {
+                return;
+            }
+
+            for (GitHubFileDto repo : repoList) {
+                if ("file".equals(repo.getType()) && isDocFile(repo.getName())) {
+                    // 并行处理文档文件
+                    fork(() -> {
+                        String fileContent = fetch(() -> getFileContent(repo.getUrl()));
+                        if (fileContent != null) {
+                            docs.add(fileContent);
+                        }
+                    });
+                } else if ("dir".equals(repo.getType()) && repo.getPath().contains("docs")) {
+                    // 并行处理子目录
+                    fork(() -> listDirectory(repo.getPath(), depth + 1));
+                }
+            }
+        }
+
+        /**
+         * 在并发限制内发起请求，等待许可的时间不超过截止时间
+         */
+        private <T> T fetch(GitHubSingleFlight.Loader<T> loader) {
+            try {
+                if (!permits.tryAcquire(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS)) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            try {
+                return loader.load();
+            } catch (IOException e) {
+                log.error("请求GitHub API获取仓库文档异常: {}, 仓库: {}/{}", e.getMessage(), login, repoName);
+                return null;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * 判断是否为文档文件
+     */
+    private boolean isDocFile(String fileName) {
+        return fileName.endsWith(".md") || fileName.endsWith(".txt");
+    }
+
+    /**
+     * 获取文件内容
+     * 优先以raw媒体类型直接流式读取UTF-8文本，失败时回退到JSON + base64
+     */
+    private String getFileContent(String fileUrl) {
+        try {
+            GitHubResponse raw = getRawContent(fileUrl);
+            if (raw.isOk()) {
+                return raw.getBody();
+            }
+            if (raw.getStatusCode() == 404) {
+                return null;
+            }
+
+            GitHubFileDto content = getGitHubResource(fileUrl, in -> GitHubJsonDecoder.decodeObject(in, GitHubFileDto.class));
+            if (content != null && content.getContent() != null) {
+                return base64(content.getContent());
+            }
+        } catch (Exception e) {
+            log.warn("获取文件内容失败: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 以raw媒体类型获取文件内容，最多读取 github.client.file.max.bytes 字节
+     * @param fileUrl contents或blobs接口的URL
+     * @return 响应，状态码为200时body为文件内容
+     */
+    private GitHubResponse getRawContent(String fileUrl) throws IOException {
+        String key = RAW_MEDIA_KEY_PREFIX + fileUrl;
+        return singleFlight.execute(key, () ->
+                executeWithDiskCache(key, Collections.emptyMap(), in -> readLimited(in, fileUrl), (headers, reader) ->
+                        executeHedgeable(fileUrl, () -> {
+                            HttpGet request = new HttpGet(fileUrl);
+                            request.setHeader("Accept", "application/vnd.github.raw");
+                            headers.forEach(request::setHeader);
+                            return request;
+                        }, reader)));
+    }
+
+    /**
+     * 按UTF-8读取响应内容，超过大小上限的部分直接丢弃，截断位置回退到完整字符的边界
+     */
+    private String readLimited(InputStream in, String fileUrl) throws IOException {
+        byte[] bytes = in.readNBytes(fileMaxBytes);
+        if (bytes.length == fileMaxBytes && in.read() != -1) {
+            int length = utf8Boundary(bytes, bytes.length);
+            log.info("文件超过{}字节，已截断为{}字节: {}", fileMaxBytes, length, fileUrl);
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按字节截断的UTF-8内容末尾可能是不完整的多字节字符，解码后会变成替换字符，截断前回退到字符边界
+     * @param bytes UTF-8内容
+     * @param length 截断的字节数
+     * @return 不超过length的最后一个完整字符的结束位置
+     */
+    static int utf8Boundary(byte[] bytes, int length) {
+        int lead = length - 1;
+        // 向前跳过后续字节(10xxxxxx)找到最后一个字符的首字节，UTF-8字符最长4字节
+        while (lead > 0 && length - lead < 4 && (bytes[lead] & 0xC0) == 0x80) {
+            lead--;
+        }
+        if (lead < 0) {
+            return length;
+        }
+        int first = bytes[lead] & 0xFF;
+        int expected = first >= 0xF0 ? 4 : first >= 0xE0 ? 3 : first >= 0xC0 ? 2 : 1;
+        return length - lead < expected ? lead : length;
+    }
+
+    /**
+     * base64解码
+     * @param base64EncodedString GitHub返回的base64内容(每60个字符一个换行)
+     * @return 解码后的UTF-8文本
+     */
+    private String base64(String base64EncodedString) {
+        try {
+            // MIME解码器会忽略换行等非Base64字符，不需要预先清理字符串
+            byte[] decodedBytes = Base64.getMimeDecoder().decode(base64EncodedString);
+            return new String(decodedBytes, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            log.warn("base64解码失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 带条件请求缓存的资源获取方法
+     * 携带上次响应的 ETag / Last-Modified 发起请求，GitHub返回304时直接使用缓存的解析结果
+     * @param resourcePath API资源路径
+     * @param type 响应的DTO类型，直接从响应流解码
+     * @return 解析后的结果
+     */
+    private <T> T getCachedResource(String resourcePath, Class<T> type) throws IOException {
+        return getCachedResponse(resourcePath, in -> GitHubJsonDecoder.decodeObject(in, type), GitHubResponse::getContent);
+    }
+
+    /**
+     * 带条件请求缓存的资源获取方法，解析器可以读取响应头
+     * @param resourcePath API资源路径
+     * @param reader 响应内容读取方式
+     * @param parser 响应解析器
+     * @return 解析后的结果
+     */
+    private <T> T getCachedResponse(String resourcePath, ContentReader reader,
+                                    Function<GitHubResponse, T> parser) throws IOException {
+        // 相同URL的并发调用共享同一次请求和解析结果
+        return singleFlight.execute(resourcePath, () -> {
+            GitHubResponseCache.Entry cached = responseCache.get(resourcePath);
+            GitHubResponse response = executeGet(resourcePath, conditionalHeaders(cached), reader);
+            return resolveCachedResponse(resourcePath, cached, response, parser);
+        });
+    }
+
+    /**
+     * 异步的带条件请求缓存的资源获取方法
+     * @param resourcePath API资源路径
+     * @param type 响应的DTO类型，直接从响应流解码
+     * @return 解析后的结果
+     */
+    private <T> CompletableFuture<T> getCachedResourceAsync(String resourcePath, Class<T> type) {
+        return getCachedResponseAsync(resourcePath, in -> GitHubJsonDecoder.decodeObject(in, type), GitHubResponse::getContent);
+    }
+
+    /**
+     * 异步的带条件请求缓存的资源获取方法，解析器可以读取响应头
+     * 请求由相同资源的调用方共享，调用方取消返回的Future只是不再等待，请求仍会完成并写入缓存
+     * @param resourcePath API资源路径
+     * @param reader 响应内容读取方式
+     * @param parser 响应解析器
+     * @return 解析后的结果
+     */
+    private <T> CompletableFuture<T> getCachedResponseAsync(String resourcePath, ContentReader reader,
+                                                            Function<GitHubResponse, T> parser) {
+        return singleFlight.executeAsync(resourcePath, () -> {
+            GitHubResponseCache.Entry cached = responseCache.get(resourcePath);
+            GitHubRequestPriority priority = GitHubRequestPriority.current();
+            CompletableFuture<GitHubResponse> request = diskCache == null
+                    ? executeGetAsync(resourcePath, conditionalHeaders(cached), reader, priority, 0)
+                    : executeGetOnVirtualThread(resourcePath, conditionalHeaders(cached), reader, priority);
+            return request
+                    .thenApply(response -> resolveCachedResponse(resourcePath, cached, response, parser));
+        });
+    }
+
+    /**
+     * 根据缓存的校验信息构建条件请求头
+     */
+    private Map<String, String> conditionalHeaders(GitHubResponseCache.Entry cached) {
+        Map<String, String> headers = new HashMap<>();
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                headers.put("If-None-Match", cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                headers.put("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * 处理条件请求的响应，304时返回缓存结果，200时解析并更新缓存
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T resolveCachedResponse(String resourcePath, GitHubResponseCache.Entry cached,
+                                        GitHubResponse response, Function<GitHubResponse, T> parser) {
+        if (response == null) {
+            return null;
+        }
+
+        if (response.isNotModified() && cached != null) {
+            responseCache.recordNotModified();
+            log.debug("GitHub资源未变化，使用缓存: {}", resourcePath);
+            return (T) cached.getValue();
+        }
+
+        if (!response.isOk() || response.getContent() == null) {
+            return null;
+        }
+
+        T value = parser.apply(response);
+        responseCache.put(resourcePath, response.getHeader("ETag"), response.getHeader("Last-Modified"), value);
+        return value;
+    }
+
+    /**
+     * 通用的GitHub API资源获取方法(不走条件请求缓存)
+     * @param resourcePath API资源路径
+     * @param reader 响应内容读取方式
+     * @return 读取后的响应内容
+     */
+    private <T> T getGitHubResource(String resourcePath, ContentReader reader) throws IOException {
+        return singleFlight.execute(RAW_KEY_PREFIX + resourcePath, () -> {
+            GitHubResponse response = executeGet(resourcePath, Collections.emptyMap(), reader);
+            if (response == null || !response.isOk()) {
+                return null;
+            }
+            return response.getContent();
+        });
+    }
+
+    /**
+     * 发起GET请求
+     * @param resourcePath API资源路径
+     * @param extraHeaders 额外的请求头
+     * @param reader 响应内容读取方式
+     * @return 响应，失败时状态码非200/304
+     */
+    private GitHubResponse executeGet(String resourcePath, Map<String, String> extraHeaders,
+                                      ContentReader reader) throws IOException {
+        return executeWithDiskCache(resourcePath, extraHeaders, reader, (headers, contentReader) ->
+                executeHedgeable(resourcePath, () -> {
+                    HttpGet request = new HttpGet(resourcePath);
+                    request.setHeader("Accept", "application/vnd.github.v3+json");
+                    headers.forEach(request::setHeader);
+                    return request;
+                }, contentReader));
+    }
+
+    /**
+     * 经过磁盘缓存发起请求
+     * 回放模式下只读取磁盘缓存；否则在内存缓存没有校验信息时，使用磁盘记录的校验信息发起条件请求，
+     * 304时返回磁盘中的内容，200时把原始响应写入磁盘
+     * @param key 磁盘缓存key
+     * @param extraHeaders 额外的请求头
+     * @param reader 响应内容读取方式
+     * @param requestExecutor 真正发起请求的方法
+     * @return 响应，回放模式下未命中时状态码为504
+     */
+    private GitHubResponse executeWithDiskCache(String key, Map<String, String> extraHeaders, ContentReader reader,
+                                                RequestExecutor requestExecutor) throws IOException {
+        if (diskCache == null) {
+            return requestExecutor.execute(extraHeaders, reader);
+        }
+
+        GitHubDiskCache.Record stored = diskCache.get(key);
+        if (replay) {
+            if (stored == null) {
+                log.debug("回放模式下磁盘缓存未命中: {}", key);
+                return new GitHubResponse(504, null);
+            }
+            return replayResponse(stored, reader);
+        }
+
+        Map<String, String> headers = extraHeaders;
+        boolean diskValidators = stored != null
+                && !extraHeaders.containsKey("If-None-Match") && !extraHeaders.containsKey("If-Modified-Since");
+        if (diskValidators) {
+            headers = new HashMap<>(extraHeaders);
+            String etag = stored.getHeaders().get("ETag");
+            if (etag != null) {
+                headers.put("If-None-Match", etag);
+            }
+            String lastModified = stored.getHeaders().get("Last-Modified");
+            if (lastModified != null) {
+                headers.put("If-Modified-Since", lastModified);
+            }
+        }
+
+        GitHubResponse response = requestExecutor.execute(headers, in -> capture(in, reader));
+        if (response.isNotModified() && diskValidators) {
+            return replayResponse(stored, reader);
+        }
+        if (!response.isOk() || !(response.getContent() instanceof DiskCapture capture)) {
+            return response;
+        }
+
+        if (capture.body() != null) {
+            Map<String, String> savedHeaders = new LinkedHashMap<>();
+            for (String name : DISK_CACHE_HEADERS) {
+                String value = response.getHeader(name);
+                if (value != null) {
+                    savedHeaders.put(name, value);
+                }
+            }
+            diskCache.put(key, savedHeaders, capture.body());
+        }
+        return response.withContent(capture.content());
+    }
+
+    /**
+     * 读取响应内容的同时保留原始字节，超过段文件大小的响应只读取不保存
+     */
+    private DiskCapture capture(InputStream in, ContentReader reader) throws IOException {
+        int limit = (int) Math.min(diskCacheSegmentBytes, Integer.MAX_VALUE - 8);
+        byte[] head = in.readNBytes(limit + 1);
+        if (head.length <= limit) {
+            return new DiskCapture(reader.read(new ByteArrayInputStream(head)), head);
+        }
+        return new DiskCapture(reader.read(new SequenceInputStream(new ByteArrayInputStream(head), in)), null);
+    }
+
+    /**
+     * 使用磁盘中的记录构造200响应
+     */
+    private GitHubResponse replayResponse(GitHubDiskCache.Record stored, ContentReader reader) throws IOException {
+        GitHubResponse response = new GitHubResponse(200, reader.read(new ByteArrayInputStream(stored.getBody())));
+        response.getHeaders().putAll(stored.getHeaders());
+        return response;
+    }
+
+    /**
+     * 开启磁盘缓存时异步请求同样经过磁盘缓存，在虚拟线程上执行同步请求
+     */
+    private CompletableFuture<GitHubResponse> executeGetOnVirtualThread(String resourcePath, Map<String, String> extraHeaders,
+                                                                        ContentReader reader, GitHubRequestPriority priority) {
+        return CompletableFuture.supplyAsync(() -> GitHubRequestPriority.call(priority, () -> {
+            try {
+                return executeGet(resourcePath, extraHeaders, reader);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }), asyncHttpClient.dispatcher().executorService());
+    }
+
+    /**
+     * REST接口所有token当前剩余的请求额度之和
+     */
+    public int getRemainingRequests() {
+        return tokenScheduler.totalRemaining();
+    }
+
+    /**
+     * 最坏情况下(GraphQL失败回退到REST)获取一个用户消耗的REST请求数
+     * 用户信息1次，仓库和事件各最多 github.client.page.limit 页
+     */
+    public int maxRequestsPerUser() {
+        return 1 + 2 * pageLimit;
+    }
+
+    /**
+     * 发起GraphQL请求，GraphQL与REST的额度相互独立，使用单独的token调度器
+     * @param requestBody 请求体，包含query和variables
+     * @return 响应内容，失败时返回null
+     */
+    public String postGraphQL(String requestBody) throws IOException {
+        if (replay) {
+            // GraphQL请求不经过磁盘缓存，回放模式下由调用方回退到REST接口
+            return null;
+        }
+        GitHubResponse response = execute(graphqlUrl, graphqlTokenScheduler, () -> {
+            HttpPost request = new HttpPost(graphqlUrl);
+            request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
+            return request;
+        });
+        return response.isOk() ? response.getBody() : null;
+    }
+
+    /**
+     * 发起请求，被限流时换token后重试
+     * @param resourcePath API资源路径，用于日志
+     * @param scheduler 使用的token调度器
+     * @param requestFactory 请求构造器，每次重试都会构造新的请求
+     * @return 响应，失败时状态码非200/304
+     */
+    private GitHubResponse execute(String resourcePath, GitHubTokenScheduler scheduler,
+                                   Supplier<HttpRequestBase> requestFactory) throws IOException {
+        return execute(resourcePath, scheduler, requestFactory,
+                in -> new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 发起请求，被限流时换token后重试
+     * @param resourcePath API资源路径，用于日志
+     * @param scheduler 使用的token调度器
+     * @param requestFactory 请求构造器，每次重试都会构造新的请求
+     * @param reader 响应内容读取方式，直接读取响应流
+     * @return 响应，失败时状态码非200/304
+     */
+    private GitHubResponse execute(String resourcePath, GitHubTokenScheduler scheduler,
+                                   Supplier<HttpRequestBase> requestFactory, ContentReader reader) throws IOException {
+        return execute(resourcePath, scheduler, requestFactory, reader, null, null);
+    }
+
+    /**
+     * 发起幂等的GET请求，开启对冲时交互请求超过近期延迟分位数仍未返回，则用另一个token和连接再发一次，
+     * 取先返回的结果并取消另一个；对冲次数受 github.client.hedge.max.ratio 限制
+     * @param resourcePath API资源路径
+     * @param requestFactory 请求构造器
+     * @param reader 响应内容读取方式，两路请求可能都会读取，不能有副作用
+     * @return 响应，失败时状态码非200/304
+     */
+    private GitHubResponse executeHedgeable(String resourcePath, Supplier<HttpRequestBase> requestFactory,
+                                            ContentReader reader) throws IOException {
+        if (!hedgeEnabled || GitHubRequestPriority.current() != GitHubRequestPriority.INTERACTIVE) {
+            return execute(resourcePath, tokenScheduler, requestFactory, reader);
+        }
+
+        hedgePolicy.recordRequest();
+        HedgedAttempt primary = new HedgedAttempt();
+        HedgedAttempt hedge = new HedgedAttempt();
+        CompletableFuture<GitHubResponse> primaryFuture = submitAttempt(resourcePath, requestFactory, reader, primary, hedge);
+        long hedgeDelay = hedgePolicy.hedgeDelayMillis(GitHubMetrics.endpointTemplate(resourcePath));
+        try {
+            // 对冲计时从请求发出开始，不包含等待通道、并发许可和token的时间
+            CompletableFuture.anyOf(primary.sent, primaryFuture).get();
+            return primaryFuture.get(hedgeDelay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (!hedgePolicy.tryHedge()) {
+                return awaitHedged(primaryFuture, primary, hedge);
+            }
+            log.debug("GitHub请求超过{}ms未返回，发起对冲请求: {}", hedgeDelay, resourcePath);
+        } catch (InterruptedException e) {
+            primary.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待GitHub请求时被中断");
+        } catch (ExecutionException e) {
+            throw unwrapExecutionException(e);
+        }
+
+        CompletableFuture<GitHubResponse> hedgeFuture = submitAttempt(resourcePath, requestFactory, reader, hedge, primary);
+        CompletableFuture<GitHubResponse> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        primaryFuture.whenComplete((response, e) -> settleHedged(winner, failures, response, e, hedge));
+        hedgeFuture.whenComplete((response, e) -> settleHedged(winner, failures, response, e, primary));
+        return awaitHedged(winner, primary, hedge);
+    }
+
+    /**
+     * 在虚拟线程上执行对冲请求中的一路
+     */
+    private CompletableFuture<GitHubResponse> submitAttempt(String resourcePath, Supplier<HttpRequestBase> requestFactory,
+                                                            ContentReader reader, HedgedAttempt self, HedgedAttempt other) {
+        return CompletableFuture.supplyAsync(() -> GitHubRequestPriority.call(GitHubRequestPriority.INTERACTIVE, () -> {
+            try {
+                return execute(resourcePath, tokenScheduler, requestFactory, reader, self, other);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }), hedgeExecutor);
+    }
+
+    /**
+     * 先返回响应的一路胜出并取消另一路，两路都失败时才失败
+     */
+    private void settleHedged(CompletableFuture<GitHubResponse> winner, AtomicInteger failures,
+                              GitHubResponse response, Throwable e, HedgedAttempt other) {
+        if (e == null) {
+            if (winner.complete(response)) {
+                other.cancel();
+            }
+        } else if (failures.incrementAndGet() == 2) {
+            winner.completeExceptionally(e);
+        }
+    }
+
+    private GitHubResponse awaitHedged(CompletableFuture<GitHubResponse> future,
+                                       HedgedAttempt primary, HedgedAttempt hedge) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            primary.cancel();
+            hedge.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待GitHub请求时被中断");
+        } catch (ExecutionException e) {
+            throw unwrapExecutionException(e);
+        }
+    }
+
+    private IOException unwrapExecutionException(ExecutionException e) {
+        Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                ? e.getCause().getCause() : e.getCause();
+        if (cause instanceof IOException ioException) {
+            return ioException;
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * 发起请求，被限流时换token后重试
+     * @param resourcePath API资源路径，用于日志
+     * @param scheduler 使用的token调度器
+     * @param requestFactory 请求构造器，每次重试都会构造新的请求
+     * @param reader 响应内容读取方式，直接读取响应流
+     * @param self 对冲请求中的当前一路，不对冲时为null
+     * @param other 对冲请求中的另一路，选择token时尽量避开其使用的token，不对冲时为null
+     * @return 响应，失败时状态码非200/304
+     */
+    private GitHubResponse execute(String resourcePath, GitHubTokenScheduler scheduler,
+                                   Supplier<HttpRequestBase> requestFactory, ContentReader reader,
+                                   HedgedAttempt self, HedgedAttempt other) throws IOException {
+        GitHubRequestPriority priority = GitHubRequestPriority.current();
+        for (int attempt = 0; ; attempt++) {
+            // 先占用所属通道的并发许可，后台请求在交互请求等待时让行
+            requestLanes.acquire(priority);
+
+            AdaptiveConcurrencyLimiter.Permit permit = null;
+            HttpRequestBase request;
+            String selectedToken;
+            try {
+                // 选择剩余额度最多的token，全部耗尽时阻塞到最早的重置时间
+                selectedToken = scheduler.acquire(priority, other == null ? null : other.token);
+                // 拿到token后再占用自适应并发许可，等待额度的时间不计入并发数和延迟样本
+                // GitHub开始限流或变慢时后台请求的并发会自动收缩
+                permit = acquirePermit(priority);
+                request = requestFactory.get();
+                if (self != null && !self.register(selectedToken, request)) {
+                    throw new InterruptedIOException("对冲请求已取消: " + resourcePath);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (permit != null) {
+                    permit.onIgnore();
+                }
+                requestLanes.release(priority);
+                throw e;
+            }
+            request.setHeader("User-Agent", "Mozilla/5.0");
+            request.setHeader("Authorization", "token " + selectedToken);
+
+            long start = System.nanoTime();
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                int statusCode = response.getStatusLine().getStatusCode();
+                metrics.recordResponse(resourcePath, statusCode, System.nanoTime() - start);
+                if (priority == GitHubRequestPriority.INTERACTIVE) {
+                    hedgePolicy.recordLatency(GitHubMetrics.endpointTemplate(resourcePath),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                String remaining = headerValue(response, "X-RateLimit-Remaining");
+                String retryAfter = headerValue(response, "Retry-After");
+                scheduler.update(selectedToken, statusCode, headerValue(response, "X-RateLimit-Limit"), remaining,
+                        headerValue(response, "X-RateLimit-Reset"), retryAfter);
+                // 以收到响应头的时间作为延迟样本，不包含读取响应内容的时间
+                recordOutcome(permit, statusCode, remaining);
+
+                if (statusCode == 200 || statusCode == 304) {
+                    HttpEntity entity = response.getEntity();
+                    GitHubResponse result = new GitHubResponse(statusCode,
+                            entity == null ? null : read(entity, reader, request));
+                    for (Header header : response.getAllHeaders()) {
+                        result.getHeaders().put(header.getName(), header.getValue());
+                    }
+                    return result;
+                }
+
+                // 被限流时换token(或等待额度恢复)后重试
+                if (isRateLimited(statusCode, remaining, retryAfter) && attempt < MAX_RATE_LIMIT_RETRIES) {
+                    log.warn("GitHub请求被限流, 状态码: {}, 第{}次重试, 资源路径: {}", statusCode, attempt + 1, resourcePath);
+                    continue;
+                }
+
+                log.warn("获取GitHub资源失败, 状态码: {}, 资源路径: {}", statusCode, resourcePath);
+                return new GitHubResponse(statusCode, null);
+            } catch (Exception e) {
+                if (self != null && self.cancelled) {
+                    // 对冲中落败的一路被主动取消，不计入限流反馈
+                    throw e;
+                }
+                // 已反馈过结果时不会重复计入
+                recordFailure(permit, e);
+                metrics.recordError(resourcePath, e);
+                log.error("请求GitHub API异常: {}", e.getMessage());
+                throw e;
+            } finally {
+                permit.onIgnore();
+                requestLanes.release(priority);
+            }
+        }
+    }
+
+    /**
+     * 异步发起GET请求，通道和并发许可不足时排队等待释放，token耗尽时延迟到额度恢复后再发起，不阻塞调用线程
+     * 排队中的交互请求同样使后台请求让行
+     * @param resourcePath API资源路径
+     * @param extraHeaders 额外的请求头
+     * @param reader 响应内容读取方式，直接读取响应流
+     * @param priority 请求优先级，回调线程上没有调用方的优先级，需要显式传递
+     * @param attempt 当前重试次数
+     * @return 响应，失败时状态码非200/304
+     */
+    private CompletableFuture<GitHubResponse> executeGetAsync(String resourcePath, Map<String, String> extraHeaders,
+                                                              ContentReader reader, GitHubRequestPriority priority, int attempt) {
+        return requestLanes.acquireAsync(priority)
+                .thenCompose(v -> acquirePermitAsync(priority))
+                .thenCompose(permit -> sendAsync(resourcePath, extraHeaders, reader, priority, attempt, permit));
+    }
+
+    /**
+     * 异步获取自适应并发许可，交互请求不受上限约束但计入并发数，后台请求排队到有空闲许可
+     */
+    private CompletableFuture<AdaptiveConcurrencyLimiter.Permit> acquirePermitAsync(GitHubRequestPriority priority) {
+        if (priority == GitHubRequestPriority.INTERACTIVE) {
+            return CompletableFuture.completedFuture(concurrencyLimiter.forceAcquire());
+        }
+        return concurrencyLimiter.acquireAsync();
+    }
+
+    /**
+     * 已占用通道和并发许可后异步发送请求，请求结束时释放两者
+     * @param permit 自适应并发许可
+     * @return 响应，失败时状态码非200/304
+     */
+    private CompletableFuture<GitHubResponse> sendAsync(String resourcePath, Map<String, String> extraHeaders,
+                                                        ContentReader reader, GitHubRequestPriority priority, int attempt,
+                                                        AdaptiveConcurrencyLimiter.Permit permit) {
+        String selectedToken = tokenScheduler.tryAcquire(priority);
+        if (selectedToken == null) {
+            permit.onIgnore();
+            requestLanes.release(priority);
+            return delay(tokenScheduler.millisUntilAvailable(priority))
+                    .thenCompose(v -> executeGetAsync(resourcePath, extraHeaders, reader, priority, attempt));
+        }
+
+        Call call;
+        try {
+            Request.Builder builder = new Request.Builder()
+                    .url(resourcePath)
+                    .header("User-Agent", "Mozilla/5.0")
+                    .header("Authorization", "token " + selectedToken)
+                    .header("Accept", "application/vnd.github.v3+json");
+            extraHeaders.forEach(builder::header);
+            call = asyncHttpClient.newCall(builder.build());
+        } catch (RuntimeException e) {
+            permit.onIgnore();
+            requestLanes.release(priority);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<GitHubResponse> future = new CompletableFuture<>();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                recordFailure(permit, e);
+                metrics.recordError(resourcePath, e);
+                log.error("异步请求GitHub API异常: {}", e.getMessage());
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    int statusCode = response.code();
+                    metrics.recordResponse(resourcePath, statusCode, TimeUnit.MILLISECONDS.toNanos(
+                            response.receivedResponseAtMillis() - response.sentRequestAtMillis()));
+                    tokenScheduler.update(selectedToken, statusCode,
+                            response.header("X-RateLimit-Limit"),
+                            response.header("X-RateLimit-Remaining"),
+                            response.header("X-RateLimit-Reset"),
+                            response.header("Retry-After"));
+                    recordOutcome(permit, statusCode, response.header("X-RateLimit-Remaining"));
+
+                    Object content = (statusCode == 200 && body != null) ? reader.read(body.byteStream()) : null;
+                    GitHubResponse result = new GitHubResponse(statusCode, content);
+                    for (String name : response.headers().names()) {
+                        result.getHeaders().put(name, response.header(name));
+                    }
+                    future.complete(result);
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        // 请求结束时释放通道许可
+        future.whenComplete((response, e) -> {
+            permit.onIgnore();
+            requestLanes.release(priority);
+        });
+
+        return future.thenCompose(response -> {
+            int statusCode = response.getStatusCode();
+            if (statusCode == 200 || statusCode == 304) {
+                return CompletableFuture.completedFuture(response);
+            }
+            if (isRateLimited(statusCode, response.getHeader("X-RateLimit-Remaining"), response.getHeader("Retry-After"))
+                    && attempt < MAX_RATE_LIMIT_RETRIES) {
+                log.warn("GitHub请求被限流, 状态码: {}, 第{}次重试, 资源路径: {}", statusCode, attempt + 1, resourcePath);
+                return executeGetAsync(resourcePath, extraHeaders, reader, priority, attempt + 1);
+            }
+            log.warn("获取GitHub资源失败, 状态码: {}, 资源路径: {}", statusCode, resourcePath);
+            return CompletableFuture.completedFuture(new GitHubResponse(statusCode, null));
+        });
+    }
+
+    /**
+     * 获取自适应并发许可，交互请求不受上限约束，但计入并发数
+     */
+    private AdaptiveConcurrencyLimiter.Permit acquirePermit(GitHubRequestPriority priority) throws InterruptedIOException {
+        if (priority == GitHubRequestPriority.INTERACTIVE) {
+            return concurrencyLimiter.forceAcquire();
+        }
+        try {
+            return concurrencyLimiter.acquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待GitHub并发许可时被中断");
+        }
+    }
+
+    /**
+     * 把响应反馈给自适应并发限制器
+     * 次级限流和服务端错误说明并发过高，主额度耗尽与并发无关
+     */
+    private void recordOutcome(AdaptiveConcurrencyLimiter.Permit permit, int statusCode, String remaining) {
+        if (statusCode == 429 || statusCode >= 500 || (statusCode == 403 && !"0".equals(remaining))) {
+            permit.onDropped();
+        } else if (statusCode == 403) {
+            permit.onIgnore();
+        } else {
+            permit.onSuccess();
+        }
+    }
+
+    /**
+     * 把请求异常反馈给自适应并发限制器
+     * 只有超时和连接被重置说明GitHub压力过大，其余异常(DNS解析失败、读取内容出错等)与并发无关
+     */
+    private void recordFailure(AdaptiveConcurrencyLimiter.Permit permit, Exception e) {
+        if (isOverloaded(e)) {
+            permit.onDropped();
+        } else {
+            permit.onIgnore();
+        }
+    }
+
+    static boolean isOverloaded(Throwable e) {
+        if (e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException) {
+            return true;
+        }
+        return e instanceof SocketException && e.getMessage() != null && e.getMessage().contains("Connection reset");
+    }
+
+    /**
+     * 延迟指定时长后完成，不占用线程
+     */
+    private CompletableFuture<Void> delay(long millis) {
+        Executor delayed = CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS);
+        return CompletableFuture.runAsync(() -> { }, delayed);
+    }
+
+    /**
+     * 是否被GitHub限流(主限流额度耗尽或次级限流)
+     */
+    private boolean isRateLimited(int statusCode, String remaining, String retryAfter) {
+        return (statusCode == 403 || statusCode == 429)
+                && (retryAfter != null || "0".equals(remaining));
+    }
+
+    /**
+     * 读取响应内容，读取完毕后关闭响应流
+     * 读取方提前结束(例如tarball达到字节预算)时中止请求，关闭响应流会把剩余内容全部下载完
+     */
+    private Object read(HttpEntity entity, ContentReader reader, HttpRequestBase request) throws IOException {
+        InputStream in = entity.getContent();
+        Object content;
+        try {
+            content = reader.read(in);
+            if (in.read() == -1) {
+                in.close();
+                return content;
+            }
+        } catch (IOException | RuntimeException e) {
+            abort(request, in);
+            throw e;
+        }
+        abort(request, in);
+        return content;
+    }
+
+    /**
+     * 中止请求并丢弃连接，不再读取剩余的响应内容
+     */
+    private void abort(HttpRequestBase request, InputStream in) {
+        request.abort();
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("关闭已中止的响应流: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取响应头的值
+     */
+    private String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (httpClient != null) {
+            try {
+                httpClient.close();
                 log.info("HttpClient资源已释放");
             } catch (IOException e) {
                 log.error("关闭HttpClient时出错", e);
             }
         }
 
+        if (asyncHttpClient != null) {
+            asyncHttpClient.dispatcher().executorService().shutdown();
+            asyncHttpClient.connectionPool().evictAll();
+            log.info("异步HttpClient资源已释放");
+        }
+
         if (executor != null) {
             executor.shutdown();
             log.info("ExecutorService资源已释放");
         }
+
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdown();
+        }
+
+        if (diskCache != null) {
+            diskCache.close();
+            log.info("GitHub磁盘缓存已关闭");
+        }
+    }
+
+    /**
+     * 响应内容读取方式
+     */
+    @FunctionalInterface
+    private interface ContentReader {
+        Object read(InputStream in) throws IOException;
+    }
+
+    /**
+     * 实际发起请求的方法
+     */
+    @FunctionalInterface
+    private interface RequestExecutor {
+        GitHubResponse execute(Map<String, String> headers, ContentReader reader) throws IOException;
+    }
+
+    /**
+     * 对冲请求中的一路，记录其使用的token和正在进行的请求，用于另一路避开该token以及取消落败的一路
+     */
+    private static class HedgedAttempt {
+
+        private volatile String token;
+
+        private volatile HttpRequestBase request;
+
+        private volatile boolean cancelled;
+
+        // 请求拿到token和许可、即将发出时完成
+        private final CompletableFuture<Void> sent = new CompletableFuture<>();
+
+        /**
+         * 登记即将发出的请求
+         * @return 是否仍需发出，已被取消时返回false
+         */
+        private boolean register(String token, HttpRequestBase request) {
+            this.token = token;
+            this.request = request;
+            if (cancelled) {
+                return false;
+            }
+            sent.complete(null);
+            return true;
+        }
+
+        private void cancel() {
+            cancelled = true;
+            HttpRequestBase current = request;
+            if (current != null) {
+                current.abort();
+            }
+        }
+    }
+
+    /**
+     * 读取后的响应内容和原始字节，原始字节为null时不写入磁盘
+     */
+    private record DiskCapture(Object content, byte[] body) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,458 @@
+package com.donnan.git.guru.business.github;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * GitHub响应磁盘缓存
+ * 响应按追加写入的方式保存在段文件中，内存中维护 key -> 记录位置 的索引，启动时扫描段文件重建索引。
+ * 超过容量时按最近最少使用淘汰记录，段文件中的记录全部失效后删除该段；
+ * 失效记录占用过多时，把最旧段中仍然有效的记录复制到当前段后删除旧段。
+ * 段文件使用 AsynchronousFileChannel 读写并等待完成，调用线程被中断(例如文档遍历超时后取消)时不会像 FileChannel
+ * 那样关闭整个段文件，读写完成后再恢复线程的中断状态。
+ * @author Donnan
+ */
+@Slf4j
+public class GitHubDiskCache implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // 记录头的魔数，用于识别损坏的记录
+    private static final int RECORD_MAGIC = 0x47484443;
+
+    // 记录头长度：魔数 + 记录长度
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final Path dir;
+
+    // 有效记录的最大总字节数
+    private final long maxBytes;
+
+    // 单个段文件的最大字节数
+    private final long segmentBytes;
+
+    // 按访问顺序排列的索引，头部为最近最少使用的记录
+    private final LinkedHashMap<String, Location> index = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private Segment active;
+
+    // 有效记录的总字节数
+    private long liveBytes;
+
+    public GitHubDiskCache(Path dir, long maxBytes, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+        load();
+    }
+
+    /**
+     * 读取缓存的响应
+     * @param key 缓存key，一般为请求URL
+     * @return 缓存记录，不存在或读取失败时返回null
+     */
+    public Record get(String key) {
+        Location location;
+        Segment segment;
+        synchronized (this) {
+            location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            segment = segments.get(location.getSegmentId());
+        }
+        try {
+            return readRecord(segment, location);
+        } catch (IOException e) {
+            // 段文件可能在读取期间被淘汰
+            log.debug("读取磁盘缓存失败: {}, {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 保存响应，相同key的旧记录失效
+     * @param key 缓存key，一般为请求URL
+     * @param headers 需要保存的响应头
+     * @param body 响应内容
+     */
+    public void put(String key, Map<String, String> headers, byte[] body) {
+        byte[] record;
+        try {
+            record = encode(new Record(key, System.currentTimeMillis(), headers, body));
+        } catch (IOException e) {
+            log.warn("序列化磁盘缓存记录失败: {}, {}", key, e.getMessage());
+            return;
+        }
+
+        synchronized (this) {
+            try {
+                if (active.getSize() > 0 && active.getSize() + record.length > segmentBytes) {
+                    roll();
+                }
+                long offset = active.getSize();
+                write(active.getChannel(), ByteBuffer.wrap(record), offset);
+                active.setSize(offset + record.length);
+                track(key, new Location(active.getId(), offset, record.length));
+                evict();
+            } catch (IOException e) {
+                log.warn("写入磁盘缓存失败: {}, {}", key, e.getMessage());
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.getChannel().force(false);
+                segment.getChannel().close();
+            } catch (IOException e) {
+                log.warn("关闭磁盘缓存段文件失败: {}", segment.getPath());
+            }
+        }
+        segments.clear();
+        index.clear();
+    }
+
+    /**
+     * 扫描所有段文件重建索引，后写入的记录覆盖先写入的记录
+     */
+    private void load() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        for (Path file : files) {
+            Segment segment = openSegment(segmentId(file));
+            scan(segment);
+        }
+        if (segments.isEmpty()) {
+            roll();
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        evict();
+        log.info("GitHub磁盘缓存加载完成，目录: {}，记录数: {}，有效字节数: {}", dir, index.size(), liveBytes);
+    }
+
+    private void scan(Segment segment) throws IOException {
+        AsynchronousFileChannel channel = segment.getChannel();
+        long fileSize = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (offset + RECORD_HEADER_BYTES <= fileSize) {
+            header.clear();
+            read(channel, header, offset);
+            header.flip();
+            int magic = header.getInt();
+            int length = header.getInt();
+            if (magic != RECORD_MAGIC || length <= 0 || offset + RECORD_HEADER_BYTES + length > fileSize) {
+                break;
+            }
+            String key = readKey(channel, offset + RECORD_HEADER_BYTES);
+            track(key, new Location(segment.getId(), offset, RECORD_HEADER_BYTES + length));
+            offset += RECORD_HEADER_BYTES + length;
+        }
+        if (offset < fileSize) {
+            // 进程异常退出时最后一条记录可能写了一半，截断到最后一条完整的记录
+            log.warn("磁盘缓存段文件 {} 在 {} 处损坏，已截断", segment.getPath(), offset);
+            channel.truncate(offset);
+        }
+        segment.setSize(offset);
+    }
+
+    /**
+     * 记录新的位置，旧位置失效
+     */
+    private void track(String key, Location location) {
+        // 先计入新位置，避免同一段内的覆盖写导致该段被误删
+        segments.get(location.getSegmentId()).addLive(location.getLength());
+        liveBytes += location.getLength();
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    private void release(Location location) {
+        liveBytes -= location.getLength();
+        Segment segment = segments.get(location.getSegmentId());
+        if (segment == null) {
+            return;
+        }
+        segment.addLive(-location.getLength());
+        if (segment.getLiveBytes() <= 0 && segment != active) {
+            deleteSegment(segment);
+        }
+    }
+
+    /**
+     * 超过容量时淘汰最近最少使用的记录，失效记录过多时压缩最旧的段
+     */
+    private void evict() throws IOException {
+        Iterator<Map.Entry<String, Location>> iterator = index.entrySet().iterator();
+        while (liveBytes > maxBytes && iterator.hasNext()) {
+            Location location = iterator.next().getValue();
+            iterator.remove();
+            release(location);
+        }
+
+        // 段文件总大小超过容量的2倍时，说明失效记录过多
+        while (diskBytes() > maxBytes * 2 && segments.size() > 1) {
+            compact(segments.firstEntry().getValue());
+        }
+    }
+
+    /**
+     * 把段中仍然有效的记录复制到当前段，然后删除该段
+     */
+    private void compact(Segment segment) throws IOException {
+        if (segment == active) {
+            roll();
+        }
+        List<Map.Entry<String, Location>> live = new ArrayList<>();
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            if (entry.getValue().getSegmentId() == segment.getId()) {
+                live.add(entry);
+            }
+        }
+        for (Map.Entry<String, Location> entry : live) {
+            Location location = entry.getValue();
+            ByteBuffer buffer = ByteBuffer.allocate(location.getLength());
+            read(segment.getChannel(), buffer, location.getOffset());
+            buffer.flip();
+            if (active.getSize() > 0 && active.getSize() + location.getLength() > segmentBytes) {
+                roll();
+            }
+            long offset = active.getSize();
+            write(active.getChannel(), buffer, offset);
+            active.setSize(offset + location.getLength());
+            // 直接修改位置，不改变记录在LRU中的顺序
+            entry.setValue(new Location(active.getId(), offset, location.getLength()));
+            active.addLive(location.getLength());
+        }
+        deleteSegment(segment);
+    }
+
+    private long diskBytes() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.getSize();
+        }
+        return total;
+    }
+
+    private void roll() throws IOException {
+        long id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        active = openSegment(id);
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = dir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        AsynchronousFileChannel channel = AsynchronousFileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, path, channel);
+        segment.setSize(channel.size());
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment.getId());
+        try {
+            segment.getChannel().close();
+            Files.deleteIfExists(segment.getPath());
+        } catch (IOException e) {
+            log.warn("删除磁盘缓存段文件失败: {}", segment.getPath());
+        }
+    }
+
+    private long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private Record readRecord(Segment segment, Location location) throws IOException {
+        if (segment == null) {
+            throw new IOException("段文件已删除");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(location.getLength());
+        read(segment.getChannel(), buffer, location.getOffset());
+        byte[] bytes = buffer.array();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                bytes, RECORD_HEADER_BYTES, bytes.length - RECORD_HEADER_BYTES))) {
+            String key = in.readUTF();
+            long fetchedAt = in.readLong();
+            int headerCount = in.readInt();
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (int i = 0; i < headerCount; i++) {
+                headers.put(in.readUTF(), in.readUTF());
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Record(key, fetchedAt, headers, body);
+        }
+    }
+
+    private String readKey(AsynchronousFileChannel channel, long offset) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(2);
+        read(channel, lengthBuffer, offset);
+        lengthBuffer.flip();
+        ByteBuffer keyBuffer = ByteBuffer.allocate(2 + Short.toUnsignedInt(lengthBuffer.getShort()));
+        read(channel, keyBuffer, offset);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(keyBuffer.array()))) {
+            return in.readUTF();
+        }
+    }
+
+    private byte[] encode(Record record) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(record.getBody().length + 256);
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeUTF(record.getKey());
+            out.writeLong(record.getFetchedAt());
+            out.writeInt(record.getHeaders().size());
+            for (Map.Entry<String, String> header : record.getHeaders().entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeUTF(header.getValue());
+            }
+            out.writeInt(record.getBody().length);
+            out.write(record.getBody());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.size());
+        buffer.putInt(RECORD_MAGIC);
+        buffer.putInt(payload.size());
+        buffer.put(payload.toByteArray());
+        return buffer.array();
+    }
+
+    private void read(AsynchronousFileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = await(channel.read(buffer, position + buffer.position()));
+            if (read < 0) {
+                throw new EOFException("磁盘缓存记录不完整");
+            }
+        }
+    }
+
+    private void write(AsynchronousFileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            await(channel.write(buffer, start + buffer.position()));
+        }
+    }
+
+    /**
+     * 等待读写完成，期间忽略中断，完成后恢复中断状态
+     * 中途放弃的写入可能在之后才落盘，覆盖同一位置的新记录，所以必须等到完成
+     */
+    private static int await(Future<Integer> future) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof IOException ioException ? ioException : new IOException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 缓存的响应
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Record {
+        private final String key;
+        // 从GitHub获取的时间
+        private final long fetchedAt;
+        private final Map<String, String> headers;
+        private final byte[] body;
+    }
+
+    /**
+     * 记录在段文件中的位置
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class Location {
+        private final long segmentId;
+        private final long offset;
+        private final int length;
+    }
+
+    /**
+     * 段文件
+     */
+    @Getter
+    private static class Segment {
+        private final long id;
+        private final Path path;
+        private final AsynchronousFileChannel channel;
+        private long size;
+        private long liveBytes;
+
+        private Segment(long id, Path path, AsynchronousFileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        private void setSize(long size) {
+            this.size = size;
+        }
+
+        private void addLive(long bytes) {
+            this.liveBytes += bytes;
+        }
+    }
+}
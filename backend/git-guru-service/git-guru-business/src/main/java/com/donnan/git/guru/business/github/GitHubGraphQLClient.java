@@ -0,0 +1,257 @@
+package com.donnan.git.guru.business.github;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.donnan.git.guru.business.constant.GitHubConstant;
+import com.donnan.git.guru.business.entity.github.dto.GitHubRepoDto;
+import com.donnan.git.guru.business.entity.github.dto.GitHubUserInfoDto;
+import com.donnan.git.guru.business.entity.github.dto.GitHubUserProfileDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GitHub GraphQL批量获取
+ * 使用别名查询一次请求获取多个用户的基本信息、star最多的仓库和贡献统计，
+ * 替代每个用户 info / repos / events 三次REST调用。
+ * 贡献统计只取最近90天，与REST事件接口覆盖的时间范围一致。
+ * @author Donnan
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class GitHubGraphQLClient {
+
+    // 每个用户获取的仓库数，评分只使用star最多的5个仓库
+    private static final int TOP_REPO_NUM = 5;
+
+    private static final String USER_FIELDS = """
+            fragment UserFields on User {
+              login
+              databaseId
+              name
+              company
+              websiteUrl
+              location
+              email
+              bio
+              twitterUsername
+              avatarUrl
+              url
+              createdAt
+              updatedAt
+              followers { totalCount }
+              following { totalCount }
+              gists(privacy: PUBLIC) { totalCount }
+              repositories(ownerAffiliations: OWNER, privacy: PUBLIC, first: %d, orderBy: {field: STARGAZERS, direction: DESC}) {
+                totalCount
+                nodes {
+                  databaseId
+                  name
+                  nameWithOwner
+                  url
+                  description
+                  createdAt
+                  updatedAt
+                  pushedAt
+                  diskUsage
+                  stargazerCount
+                  forkCount
+                  watchers { totalCount }
+                  primaryLanguage { name }
+                  issues(states: OPEN) { totalCount }
+                  repositoryTopics(first: 10) { nodes { topic { name } } }
+                  owner { login }
+                }
+              }
+              contributionsCollection(from: $from) {
+                totalCommitContributions
+                totalPullRequestContributions
+                totalIssueContributions
+                totalPullRequestReviewContributions
+              }
+            }
+            """.formatted(TOP_REPO_NUM);
+
+    private final GitHubClient gitHubClient;
+
+    // 每次GraphQL请求包含的用户数
+    @Value("${github.client.graphql.batch.size:20}")
+    private int batchSize;
+
+    /**
+     * 批量获取用户画像
+     * @param logins 用户名列表
+     * @return 用户名到用户画像的映射，获取失败或不存在的用户不在结果中
+     */
+    public Map<String, GitHubUserProfileDto> getUserProfiles(List<String> logins) {
+        Map<String, GitHubUserProfileDto> profiles = new HashMap<>();
+        if (logins == null || logins.isEmpty()) {
+            return profiles;
+        }
+
+        for (int from = 0; from < logins.size(); from += batchSize) {
+            List<String> batch = logins.subList(from, Math.min(from + batchSize, logins.size()));
+            try {
+                profiles.putAll(fetchBatch(batch));
+            } catch (Exception e) {
+                log.error("GraphQL批量获取用户失败，用户数: {}，错误: {}", batch.size(), e.getMessage());
+            }
+        }
+
+        log.info("GraphQL批量获取用户完成，请求 {} 个，成功 {} 个", logins.size(), profiles.size());
+        return profiles;
+    }
+
+    private Map<String, GitHubUserProfileDto> fetchBatch(List<String> logins) throws IOException {
+        // 用户名通过变量传入，避免拼接到查询语句中
+        StringBuilder params = new StringBuilder();
+        StringBuilder fields = new StringBuilder();
+        Map<String, Object> variables = new LinkedHashMap<>();
+        params.append("$from: DateTime!");
+        variables.put("from", Instant.now().minus(GitHubConstant.GITHUB_EVENT_WINDOW_DAYS, ChronoUnit.DAYS).toString());
+        for (int i = 0; i < logins.size(); i++) {
+            params.append(", $l").append(i).append(": String!");
+            fields.append("  u").append(i).append(": user(login: $l").append(i).append(") { ...UserFields }\n");
+            variables.put("l" + i, logins.get(i));
+        }
+        String query = "query(" + params + ") {\n" + fields + "}\n" + USER_FIELDS;
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("query", query);
+        body.put("variables", variables);
+
+        String json = gitHubClient.postGraphQL(JSON.toJSONString(body));
+        if (json == null) {
+            return Map.of();
+        }
+
+        JSONObject response = JSON.parseObject(json);
+        JSONArray errors = response.getJSONArray("errors");
+        if (errors != null && !errors.isEmpty()) {
+            // 不存在的用户会以错误的形式返回，其余用户的数据仍然有效
+            log.debug("GraphQL响应包含{}个错误: {}", errors.size(), errors.getJSONObject(0).getString("message"));
+        }
+
+        JSONObject data = response.getJSONObject("data");
+        Map<String, GitHubUserProfileDto> profiles = new HashMap<>();
+        if (data == null) {
+            return profiles;
+        }
+        for (int i = 0; i < logins.size(); i++) {
+            JSONObject user = data.getJSONObject("u" + i);
+            if (user != null) {
+                profiles.put(logins.get(i), toProfile(user));
+            }
+        }
+        return profiles;
+    }
+
+    private GitHubUserProfileDto toProfile(JSONObject user) {
+        GitHubUserInfoDto userInfo = new GitHubUserInfoDto();
+        userInfo.setLogin(user.getString("login"));
+        userInfo.setId(user.getInteger("databaseId"));
+        userInfo.setType("User");
+        userInfo.setName(user.getString("name"));
+        userInfo.setCompany(user.getString("company"));
+        userInfo.setBlog(user.getString("websiteUrl"));
+        userInfo.setLocation(user.getString("location"));
+        userInfo.setEmail(user.getString("email"));
+        userInfo.setBio(user.getString("bio"));
+        userInfo.setTwitterUsername(user.getString("twitterUsername"));
+        userInfo.setAvatarUrl(user.getString("avatarUrl"));
+        userInfo.setHtmlUrl(user.getString("url"));
+        userInfo.setCreatedAt(user.getDate("createdAt"));
+        userInfo.setUpdatedAt(user.getDate("updatedAt"));
+        userInfo.setFollowers(totalCount(user, "followers"));
+        userInfo.setFollowing(totalCount(user, "following"));
+        userInfo.setPublicGists(totalCount(user, "gists"));
+
+        List<GitHubRepoDto> repos = new ArrayList<>();
+        JSONObject repositories = user.getJSONObject("repositories");
+        if (repositories != null) {
+            userInfo.setPublicRepos(repositories.getIntValue("totalCount"));
+            JSONArray nodes = repositories.getJSONArray("nodes");
+            if (nodes != null) {
+                for (int i = 0; i < nodes.size(); i++) {
+                    JSONObject node = nodes.getJSONObject(i);
+                    if (node != null) {
+                        repos.add(toRepo(node));
+                    }
+                }
+            }
+        }
+
+        GitHubUserProfileDto profile = new GitHubUserProfileDto();
+        profile.setUserInfo(userInfo);
+        profile.setRepos(repos);
+
+        JSONObject contributions = user.getJSONObject("contributionsCollection");
+        if (contributions != null) {
+            profile.setCommits(contributions.getIntValue("totalCommitContributions"));
+            profile.setPrs(contributions.getIntValue("totalPullRequestContributions"));
+            profile.setIssues(contributions.getIntValue("totalIssueContributions"));
+            profile.setPrReviews(contributions.getIntValue("totalPullRequestReviewContributions"));
+        }
+        return profile;
+    }
+
+    private GitHubRepoDto toRepo(JSONObject node) {
+        GitHubRepoDto repo = new GitHubRepoDto();
+        repo.setId(node.getIntValue("databaseId"));
+        repo.setName(node.getString("name"));
+        repo.setFull_name(node.getString("nameWithOwner"));
+        repo.setHtml_url(node.getString("url"));
+        repo.setDescription(node.getString("description"));
+        repo.setCreatedAt(node.getDate("createdAt"));
+        repo.setUpdatedAt(node.getDate("updatedAt"));
+        repo.setPushedAt(node.getDate("pushedAt"));
+        repo.setSize(node.getIntValue("diskUsage"));
+        repo.setStargazers_count(node.getIntValue("stargazerCount"));
+        repo.setForks_count(node.getIntValue("forkCount"));
+        repo.setWatchers_count(totalCount(node, "watchers"));
+        repo.setOpen_issues_count(totalCount(node, "issues"));
+
+        JSONObject language = node.getJSONObject("primaryLanguage");
+        if (language != null) {
+            repo.setLanguage(language.getString("name"));
+        }
+
+        JSONObject owner = node.getJSONObject("owner");
+        if (owner != null) {
+            GitHubRepoDto.Owner repoOwner = new GitHubRepoDto.Owner();
+            repoOwner.setLogin(owner.getString("login"));
+            repo.setOwner(repoOwner);
+        }
+
+        JSONObject topics = node.getJSONObject("repositoryTopics");
+        JSONArray topicNodes = topics == null ? null : topics.getJSONArray("nodes");
+        if (topicNodes != null) {
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < topicNodes.size(); i++) {
+                JSONObject topic = topicNodes.getJSONObject(i).getJSONObject("topic");
+                if (topic != null) {
+                    names.add(topic.getString("name"));
+                }
+            }
+            repo.setTopics(names.toArray(new String[0]));
+        }
+        return repo;
+    }
+
+    private int totalCount(JSONObject object, String field) {
+        JSONObject connection = object.getJSONObject(field);
+        return connection == null ? 0 : connection.getIntValue("totalCount");
+    }
+}
@@ -0,0 +1,125 @@
+package com.donnan.git.guru.business.github;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GitHub对冲请求策略
+ * 按接口模板分别保存最近交互请求的延迟，根据同一接口的延迟分位数决定何时发起对冲请求，
+ * 文件内容、目录树等慢接口不会拉高其他接口的对冲延迟；同时用令牌桶限制对冲比例：
+ * 每个交互请求积累 maxRatio 个令牌，每次对冲消耗1个，避免GitHub整体变慢时对冲请求翻倍消耗额度。
+ * @author Donnan
+ */
+public class GitHubHedgePolicy {
+
+    // 保留的延迟样本数
+    private static final int SAMPLE_SIZE = 256;
+
+    // 样本数不足时使用默认延迟
+    private static final int MIN_SAMPLES = 20;
+
+    // 对冲延迟的下限(毫秒)，避免GitHub很快时几乎每个请求都对冲
+    private static final long MIN_DELAY_MILLIS = 50;
+
+    // 令牌桶容量，允许短时间内的少量突发
+    private static final double MAX_CREDITS = 5;
+
+    private final double percentile;
+
+    private final double maxRatio;
+
+    private final long defaultDelayMillis;
+
+    // 接口模板到延迟样本的映射
+    private final Map<String, LatencySamples> samples = new ConcurrentHashMap<>();
+
+    private double credits = 1;
+
+    private long hedgedCount;
+
+    /**
+     * @param percentile 触发对冲的延迟分位数，例如0.95
+     * @param maxRatio 对冲请求占交互请求的最大比例
+     * @param defaultDelayMillis 样本不足时的对冲延迟
+     */
+    public GitHubHedgePolicy(double percentile, double maxRatio, long defaultDelayMillis) {
+        this.percentile = Math.min(Math.max(percentile, 0.5), 0.999);
+        this.maxRatio = Math.max(maxRatio, 0);
+        this.defaultDelayMillis = defaultDelayMillis;
+    }
+
+    /**
+     * 记录一次交互请求的延迟，从请求发出开始计算
+     * @param endpoint 接口模板
+     * @param millis 延迟(毫秒)
+     */
+    public void recordLatency(String endpoint, long millis) {
+        samples.computeIfAbsent(endpoint, key -> new LatencySamples()).record(millis);
+    }
+
+    /**
+     * 记录一次可对冲的交互请求，积累对冲令牌
+     */
+    public synchronized void recordRequest() {
+        credits = Math.min(MAX_CREDITS, credits + maxRatio);
+    }
+
+    /**
+     * 尝试消耗一个对冲令牌
+     * @return 是否允许对冲
+     */
+    public synchronized boolean tryHedge() {
+        if (credits < 1) {
+            return false;
+        }
+        credits -= 1;
+        hedgedCount++;
+        return true;
+    }
+
+    /**
+     * 发起对冲前等待的时长，即该接口最近延迟的分位数
+     * @param endpoint 接口模板
+     */
+    public long hedgeDelayMillis(String endpoint) {
+        LatencySamples endpointSamples = samples.get(endpoint);
+        long delay = endpointSamples == null ? -1 : endpointSamples.percentile(percentile);
+        return delay < 0 ? defaultDelayMillis : Math.max(delay, MIN_DELAY_MILLIS);
+    }
+
+    public synchronized long getHedgedCount() {
+        return hedgedCount;
+    }
+
+    /**
+     * 单个接口的延迟样本，环形缓冲区保存最近的样本(毫秒)
+     */
+    private static class LatencySamples {
+
+        private final long[] values = new long[SAMPLE_SIZE];
+
+        private int count;
+
+        private int next;
+
+        private synchronized void record(long millis) {
+            values[next] = millis;
+            next = (next + 1) % SAMPLE_SIZE;
+            count = Math.min(count + 1, SAMPLE_SIZE);
+        }
+
+        /**
+         * @return 延迟分位数，样本不足时返回-1
+         */
+        private synchronized long percentile(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * count) - 1;
+            return sorted[Math.max(index, 0)];
+        }
+    }
+}
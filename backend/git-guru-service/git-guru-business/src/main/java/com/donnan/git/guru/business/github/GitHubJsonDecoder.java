@@ -0,0 +1,85 @@
+package com.donnan.git.guru.business.github;
+
+import com.alibaba.fastjson2.JSONFactory;
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.reader.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GitHub响应JSON流式解码
+ * 直接从响应流解码为DTO，不再先读成完整的String；每个类型的ObjectReader只构建一次，
+ * DTO中没有声明的字段在解码时直接跳过，不会为其分配对象。
+ * @author Donnan
+ */
+public final class GitHubJsonDecoder {
+
+    // GitHub返回下划线命名，DTO中部分字段为驼峰命名，需要智能匹配
+    private static final JSONReader.Feature[] FEATURES = {JSONReader.Feature.SupportSmartMatch};
+
+    // 预先构建的类型解码器
+    private static final Map<Class<?>, ObjectReader<?>> READERS = new ConcurrentHashMap<>();
+
+    private GitHubJsonDecoder() {
+    }
+
+    /**
+     * 解码JSON对象
+     * @param in 响应流，由调用方负责关闭
+     * @param type DTO类型
+     * @return 解码结果，内容为null时返回null
+     */
+    public static <T> T decodeObject(InputStream in, Class<T> type) throws IOException {
+        ObjectReader<T> objectReader = reader(type);
+        try (JSONReader jsonReader = open(in)) {
+            if (jsonReader.nextIfNull()) {
+                return null;
+            }
+            return objectReader.readObject(jsonReader, type, null, 0);
+        } catch (RuntimeException e) {
+            throw new IOException("解码GitHub响应失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 解码JSON数组
+     * @param in 响应流，由调用方负责关闭
+     * @param type 元素的DTO类型
+     * @return 解码结果，内容为null时返回null
+     */
+    public static <T> List<T> decodeList(InputStream in, Class<T> type) throws IOException {
+        ObjectReader<T> objectReader = reader(type);
+        try (JSONReader jsonReader = open(in)) {
+            if (jsonReader.nextIfNull()) {
+                return null;
+            }
+            if (!jsonReader.nextIfArrayStart()) {
+                throw new IOException("GitHub响应不是JSON数组");
+            }
+            List<T> items = new ArrayList<>();
+            while (!jsonReader.nextIfArrayEnd()) {
+                items.add(jsonReader.nextIfNull() ? null : objectReader.readObject(jsonReader, type, null, 0));
+            }
+            return items;
+        } catch (RuntimeException e) {
+            throw new IOException("解码GitHub响应失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static JSONReader open(InputStream in) {
+        return JSONReader.of(in, StandardCharsets.UTF_8, JSONFactory.createReadContext(FEATURES));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ObjectReader<T> reader(Class<T> type) {
+        return (ObjectReader<T>) READERS.computeIfAbsent(type,
+                key -> JSONFactory.getDefaultObjectReaderProvider().getObjectReader((Type) key));
+    }
+}
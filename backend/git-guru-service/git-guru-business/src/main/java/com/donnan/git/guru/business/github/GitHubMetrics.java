@@ -0,0 +1,127 @@
+package com.donnan.git.guru.business.github;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GitHub请求监控指标
+ * 请求按接口模板(如 /users/{login}、/repos/{owner}/{repo}/contents/{path})聚合，避免标签基数随用户和仓库增长。
+ * @author Donnan
+ */
+public class GitHubMetrics {
+
+    private static final String PREFIX = "github.client.";
+
+    private final MeterRegistry registry;
+
+    private final Timer leaseWaitTimer;
+
+    public GitHubMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.leaseWaitTimer = Timer.builder(PREFIX + "connection.lease.wait")
+                .description("从连接池获取连接的等待时间")
+                .register(registry);
+    }
+
+    /**
+     * 记录收到响应头的请求，耗时不包含读取响应内容
+     * @param url 请求URL
+     * @param statusCode 状态码
+     * @param nanos 耗时(纳秒)
+     */
+    public void recordResponse(String url, int statusCode, long nanos) {
+        Timer.builder(PREFIX + "requests")
+                .description("GitHub请求耗时，按接口模板和状态码区分")
+                .tag("endpoint", endpointTemplate(url))
+                .tag("status", String.valueOf(statusCode))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录没有收到响应的请求(连接失败、超时等)
+     */
+    public void recordError(String url, Throwable e) {
+        Counter.builder(PREFIX + "errors")
+                .description("GitHub请求异常次数")
+                .tag("endpoint", endpointTemplate(url))
+                .tag("exception", e.getClass().getSimpleName())
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 记录从连接池获取连接的等待时间
+     */
+    public void recordLeaseWait(long nanos) {
+        leaseWaitTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 注册每个token的剩余额度，token本身不出现在标签中，以配置中的序号区分
+     * @param type 调度器类型，rest或graphql
+     */
+    public void bindTokenScheduler(String type, GitHubTokenScheduler scheduler) {
+        for (int i = 0; i < scheduler.size(); i++) {
+            int index = i;
+            Gauge.builder(PREFIX + "token.remaining", scheduler, s -> s.remaining(index))
+                    .description("token剩余额度")
+                    .tag("type", type)
+                    .tag("token", String.valueOf(index))
+                    .register(registry);
+        }
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * 把请求URL转换为接口模板，去掉域名、查询参数和路径中的用户、仓库、文件等变量
+     */
+    static String endpointTemplate(String url) {
+        String path = url;
+        int scheme = path.indexOf("://");
+        if (scheme >= 0) {
+            int slash = path.indexOf('/', scheme + 3);
+            path = slash < 0 ? "/" : path.substring(slash);
+        }
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+
+        String[] segments = StringUtils.split(path, '/');
+        if (segments.length == 0) {
+            return "/";
+        }
+        switch (segments[0]) {
+            case "users":
+                if (segments.length == 1) {
+                    return "/users";
+                }
+                return "/users/{login}" + (segments.length > 2 ? "/" + segments[2] : "");
+            case "repos":
+                if (segments.length < 3) {
+                    return "/repos";
+                }
+                String template = "/repos/{owner}/{repo}";
+                if (segments.length == 3) {
+                    return template;
+                }
+                if ("git".equals(segments[3]) && segments.length > 4) {
+                    return template + "/git/" + segments[4] + (segments.length > 5 ? "/{sha}" : "");
+                }
+                return template + "/" + segments[3] + (segments.length > 4 ? "/{path}" : "");
+            case "search":
+                return segments.length > 1 ? "/search/" + segments[1] : "/search";
+            default:
+                return "/" + segments[0];
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.donnan.git.guru.business.github;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.List;
+
+/**
+ * GitHub分页结果
+ * @author Donnan
+ */
+@Getter
+@AllArgsConstructor
+public class GitHubPage<T> {
+
+    // 当前页的数据
+    private final List<T> items;
+
+    // 下一页的URL，没有下一页时为null
+    private final String nextUrl;
+
+    /**
+     * 从Link响应头中解析 rel="next" 的URL
+     * 格式: <https://api.github.com/...&page=2>; rel="next", <https://api.github.com/...&page=5>; rel="last"
+     * @param linkHeader Link响应头
+     * @return 下一页的URL，没有时返回null
+     */
+    public static String parseNextUrl(String linkHeader) {
+        if (StringUtils.isBlank(linkHeader)) {
+            return null;
+        }
+        for (String link : linkHeader.split(",")) {
+            String[] segments = link.split(";");
+            if (segments.length < 2) {
+                continue;
+            }
+            for (int i = 1; i < segments.length; i++) {
+                if ("rel=\"next\"".equals(segments[i].trim())) {
+                    String url = segments[0].trim();
+                    if (url.startsWith("<") && url.endsWith(">")) {
+                        return url.substring(1, url.length() - 1);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,90 @@
+package com.donnan.git.guru.business.github;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * GitHub分页迭代器
+ * 按 Link: rel="next" 懒加载下一页，内存中最多只保留一页数据。
+ * @author Donnan
+ */
+@Slf4j
+public class GitHubPageIterator<T> implements Iterator<T> {
+
+    private final PageLoader<T> loader;
+
+    // 最多加载的页数
+    private final int pageLimit;
+
+    private String nextUrl;
+
+    private Iterator<T> current;
+
+    private int loadedPages;
+
+    public GitHubPageIterator(String firstUrl, int pageLimit, PageLoader<T> loader) {
+        this.nextUrl = firstUrl;
+        this.pageLimit = pageLimit;
+        this.loader = loader;
+    }
+
+    /**
+     * 转换为顺序流，流被消费时才会发起请求
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (current == null || !current.hasNext()) {
+            if (nextUrl == null || loadedPages >= pageLimit) {
+                return false;
+            }
+            loadNextPage();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    private void loadNextPage() {
+        String url = nextUrl;
+        nextUrl = null;
+        loadedPages++;
+        try {
+            GitHubPage<T> page = loader.load(url);
+            if (page == null || page.getItems() == null) {
+                return;
+            }
+            current = page.getItems().stream().filter(Objects::nonNull).iterator();
+            nextUrl = page.getNextUrl();
+        } catch (IOException e) {
+            // 加载失败时结束迭代，已经返回的数据仍然有效
+            log.error("获取GitHub分页数据异常: {}, URL: {}", e.getMessage(), url);
+        }
+    }
+
+    /**
+     * 单页加载器
+     */
+    @FunctionalInterface
+    public interface PageLoader<T> {
+        GitHubPage<T> load(String url) throws IOException;
+    }
+}
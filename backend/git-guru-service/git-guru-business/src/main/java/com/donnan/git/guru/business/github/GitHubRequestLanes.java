@@ -0,0 +1,222 @@
+package com.donnan.git.guru.business.github;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * GitHub请求通道
+ * 交互请求和后台请求分别限制并发数，两者之和不超过连接池的单路由连接数，互不抢占连接；
+ * 有交互请求在等待时，后台请求暂停获取新的许可。
+ * 同步和异步请求在同一个队列中按到达顺序等待，释放许可时直接交给队首的请求，异步请求不需要轮询。
+ * @author Donnan
+ */
+public class GitHubRequestLanes {
+
+    private final int interactiveLimit;
+
+    private final int backgroundLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int interactiveInFlight;
+
+    private int backgroundInFlight;
+
+    // 正在等待许可的交互请求，队列非空时后台请求让行
+    private final Deque<CompletableFuture<Void>> interactiveWaiters = new ArrayDeque<>();
+
+    // 正在等待许可的后台请求
+    private final Deque<CompletableFuture<Void>> backgroundWaiters = new ArrayDeque<>();
+
+    public GitHubRequestLanes(int interactiveLimit, int backgroundLimit) {
+        if (interactiveLimit <= 0 || backgroundLimit <= 0) {
+            throw new IllegalArgumentException("GitHub请求通道的并发数必须大于0");
+        }
+        this.interactiveLimit = interactiveLimit;
+        this.backgroundLimit = backgroundLimit;
+    }
+
+    /**
+     * 获取许可，通道已满时阻塞
+     * @param priority 请求优先级
+     * @throws InterruptedIOException 等待过程中线程被中断
+     */
+    public void acquire(GitHubRequestPriority priority) throws InterruptedIOException {
+        CompletableFuture<Void> waiter = acquireAsync(priority);
+        try {
+            waiter.get();
+        } catch (InterruptedException e) {
+            // 取消失败说明许可已经交给了当前请求，需要归还
+            if (!waiter.cancel(false)) {
+                release(priority);
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待GitHub请求通道时被中断");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 异步获取许可，通道已满时排队，由释放许可的请求完成，不占用线程
+     * 排队中的交互请求同样使后台请求让行；取消返回的future即放弃排队
+     * @param priority 请求优先级
+     * @return 获得许可时完成
+     */
+    public CompletableFuture<Void> acquireAsync(GitHubRequestPriority priority) {
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        lock.lock();
+        try {
+            // 已有请求在排队时不插队
+            if (waiters(priority).isEmpty() && available(priority)) {
+                occupy(priority);
+                waiter.complete(null);
+                return waiter;
+            }
+            waiters(priority).add(waiter);
+        } finally {
+            lock.unlock();
+        }
+        waiter.whenComplete((v, e) -> {
+            if (e != null) {
+                abandon(waiter, priority);
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * 非阻塞地获取许可
+     * @param priority 请求优先级
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(GitHubRequestPriority priority) {
+        lock.lock();
+        try {
+            if (!waiters(priority).isEmpty() || !available(priority)) {
+                return false;
+            }
+            occupy(priority);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 释放许可，空出的许可交给排队的请求
+     * @param priority 请求优先级
+     */
+    public void release(GitHubRequestPriority priority) {
+        List<Grant> grants;
+        lock.lock();
+        try {
+            if (priority == GitHubRequestPriority.INTERACTIVE) {
+                interactiveInFlight--;
+            } else {
+                backgroundInFlight--;
+            }
+            grants = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        complete(grants);
+    }
+
+    public int getInteractiveInFlight() {
+        lock.lock();
+        try {
+            return interactiveInFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getBackgroundInFlight() {
+        lock.lock();
+        try {
+            return backgroundInFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 排队的请求被取消或中断时移出队列
+     * 最后一个等待的交互请求离开后，只因让行而排队的后台请求可以继续
+     */
+    private void abandon(CompletableFuture<Void> waiter, GitHubRequestPriority priority) {
+        List<Grant> grants;
+        lock.lock();
+        try {
+            if (!waiters(priority).remove(waiter)) {
+                return;
+            }
+            grants = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        complete(grants);
+    }
+
+    /**
+     * 按到达顺序把空闲的许可交给排队的请求，只在持有锁时调用
+     * @return 获得许可的请求，在释放锁之后完成，避免在锁内执行回调
+     */
+    private List<Grant> dispatch() {
+        List<Grant> grants = new ArrayList<>();
+        // 先分配交互请求，交互请求全部拿到许可后后台请求才不需要让行
+        for (GitHubRequestPriority priority : GitHubRequestPriority.values()) {
+            Deque<CompletableFuture<Void>> waiters = waiters(priority);
+            while (!waiters.isEmpty() && available(priority)) {
+                occupy(priority);
+                grants.add(new Grant(waiters.poll(), priority));
+            }
+        }
+        return grants;
+    }
+
+    private void complete(List<Grant> grants) {
+        for (Grant grant : grants) {
+            // 请求在获得许可前已经取消，许可归还给下一个请求
+            if (!grant.waiter.complete(null)) {
+                release(grant.priority);
+            }
+        }
+    }
+
+    private Deque<CompletableFuture<Void>> waiters(GitHubRequestPriority priority) {
+        return priority == GitHubRequestPriority.INTERACTIVE ? interactiveWaiters : backgroundWaiters;
+    }
+
+    /**
+     * 只在持有锁时调用
+     */
+    private boolean available(GitHubRequestPriority priority) {
+        if (priority == GitHubRequestPriority.INTERACTIVE) {
+            return interactiveInFlight < interactiveLimit;
+        }
+        // 有交互请求在等待时后台请求让行
+        return backgroundInFlight < backgroundLimit && interactiveWaiters.isEmpty();
+    }
+
+    private void occupy(GitHubRequestPriority priority) {
+        if (priority == GitHubRequestPriority.INTERACTIVE) {
+            interactiveInFlight++;
+        } else {
+            backgroundInFlight++;
+        }
+    }
+
+    /**
+     * 已分配许可、等待完成的请求
+     */
+    private record Grant(CompletableFuture<Void> waiter, GitHubRequestPriority priority) {
+    }
+}
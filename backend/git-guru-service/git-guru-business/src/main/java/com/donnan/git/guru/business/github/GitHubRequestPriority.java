@@ -0,0 +1,52 @@
+package com.donnan.git.guru.business.github;
+
+import java.util.function.Supplier;
+
+/**
+ * GitHub请求优先级
+ * 聊天工具等用户正在等待结果的调用为INTERACTIVE，定时抓取等后台任务为BACKGROUND。
+ * 优先级保存在当前线程上，未指定时为BACKGROUND；切换到其他线程执行时需要通过 {@link #wrap(Runnable)} 传递。
+ * @author Donnan
+ */
+public enum GitHubRequestPriority {
+
+    INTERACTIVE,
+
+    BACKGROUND;
+
+    private static final ThreadLocal<GitHubRequestPriority> CURRENT = ThreadLocal.withInitial(() -> BACKGROUND);
+
+    /**
+     * 当前线程的请求优先级
+     */
+    public static GitHubRequestPriority current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 以指定优先级执行
+     * @param priority 优先级
+     * @param action 需要执行的操作
+     * @return 操作的结果
+     */
+    public static <T> T call(GitHubRequestPriority priority, Supplier<T> action) {
+        GitHubRequestPriority previous = CURRENT.get();
+        CURRENT.set(priority);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * 以当前线程的优先级包装任务，用于提交到其他线程执行
+     */
+    public static Runnable wrap(Runnable task) {
+        GitHubRequestPriority priority = current();
+        return () -> call(priority, () -> {
+            task.run();
+            return null;
+        });
+    }
+}
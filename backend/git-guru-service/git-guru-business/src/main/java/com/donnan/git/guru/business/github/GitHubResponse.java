@@ -0,0 +1,60 @@
+package com.donnan.git.guru.business.github;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * GitHub API响应
+ * @author Donnan
+ */
+@Getter
+public class GitHubResponse {
+
+    private final int statusCode;
+
+    // 响应内容，按请求的读取方式为字符串或解码后的DTO
+    private final Object content;
+
+    // 响应头，key不区分大小写
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    public GitHubResponse(int statusCode, Object content) {
+        this.statusCode = statusCode;
+        this.content = content;
+    }
+
+    /**
+     * 以字符串方式读取的响应内容
+     */
+    public String getBody() {
+        return content instanceof String body ? body : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getContent() {
+        return (T) content;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * 替换响应内容，保留状态码和响应头
+     */
+    public GitHubResponse withContent(Object content) {
+        GitHubResponse response = new GitHubResponse(statusCode, content);
+        response.headers.putAll(headers);
+        return response;
+    }
+
+    public boolean isOk() {
+        return statusCode == 200;
+    }
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+}
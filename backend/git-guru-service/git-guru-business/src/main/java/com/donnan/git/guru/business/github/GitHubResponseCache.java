@@ -0,0 +1,62 @@
+package com.donnan.git.guru.business.github;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GitHub条件请求缓存
+ * 按URL保存 ETag / Last-Modified 和解析后的结果，配合 If-None-Match / If-Modified-Since 使用，
+ * GitHub返回304时直接使用缓存结果(304不计入额度)。
+ * @author Donnan
+ */
+public class GitHubResponseCache {
+
+    private final Cache<String, Entry> cache;
+
+    // 304命中次数
+    private final AtomicLong notModifiedCount = new AtomicLong();
+
+    public GitHubResponseCache(long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public Entry get(String url) {
+        return cache.getIfPresent(url);
+    }
+
+    /**
+     * 保存响应，没有校验信息的响应无法发起条件请求，不缓存
+     */
+    public void put(String url, String etag, String lastModified, Object value) {
+        if (value == null || (etag == null && lastModified == null)) {
+            return;
+        }
+        cache.put(url, new Entry(etag, lastModified, value));
+    }
+
+    public void recordNotModified() {
+        notModifiedCount.incrementAndGet();
+    }
+
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final Object value;
+    }
+}
@@ -0,0 +1,215 @@
+package com.donnan.git.guru.business.github;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * GitHub请求合并
+ * 同一个key并发的多个调用只会真正执行一次，其余调用等待并共享同一个结果。
+ * 发起调用的优先级决定请求排队的通道，为避免交互请求等在后台请求后面，交互调用不会加入后台调用，
+ * 而是单独发起一次；后台调用可以加入正在进行的交互调用。
+ * 发起调用的线程被中断时(例如调用方超时后取消)，等待中的调用不会跟着失败，而是重新发起或加入新的调用。
+ * @author Donnan
+ */
+public class GitHubSingleFlight {
+
+    // 交互调用在key前加上该前缀，与后台调用分开合并
+    private static final String INTERACTIVE_PREFIX = "interactive|";
+
+    // 等待的调用因发起线程被中断而失败，需要重新执行
+    private static final Object RETRY = new Object();
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    // 总调用次数
+    private final AtomicLong totalCount = new AtomicLong();
+
+    // 被合并(未真正发起请求)的调用次数
+    private final AtomicLong deduplicatedCount = new AtomicLong();
+
+    /**
+     * 执行调用，如果相同key的调用正在进行中则等待其结果
+     * @param key 调用的唯一标识，一般为请求URL
+     * @param loader 真正的调用
+     * @return 调用结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Loader<T> loader) throws IOException {
+        totalCount.incrementAndGet();
+
+        while (true) {
+            String flightKey = flightKey(key);
+            CompletableFuture<Object> created = new CompletableFuture<>();
+            CompletableFuture<Object> shared = join(key);
+            if (shared == null) {
+                shared = inFlight.putIfAbsent(flightKey, created);
+            }
+            if (shared == null) {
+                return lead(flightKey, created, loader);
+            }
+            Object value = awaitShared(shared);
+            if (value != RETRY) {
+                return (T) value;
+            }
+        }
+    }
+
+    /**
+     * 作为发起方执行调用，并把结果通知等待中的调用方
+     */
+    private <T> T lead(String flightKey, CompletableFuture<Object> created, Loader<T> loader) throws IOException {
+        try {
+            T value = loader.load();
+            inFlight.remove(flightKey, created);
+            created.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // 先移除再通知，重试的调用方不会再次拿到这个失败的调用
+            inFlight.remove(flightKey, created);
+            // 失败也要通知等待中的调用方，避免其一直阻塞；因中断失败时让其重试
+            created.completeExceptionally(isInterrupted(e) ? new LeaderInterruptedException(e) : e);
+            throw e;
+        }
+    }
+
+    /**
+     * 等待其他线程发起的调用
+     * @return 调用结果，发起线程被中断时返回 RETRY
+     */
+    private Object awaitShared(CompletableFuture<Object> future) throws IOException {
+        try {
+            Object value = await(future);
+            deduplicatedCount.incrementAndGet();
+            return value;
+        } catch (LeaderInterruptedException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("等待合并的GitHub请求时被中断");
+            }
+            return RETRY;
+        } catch (IOException | RuntimeException | Error e) {
+            deduplicatedCount.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 调用是否因发起线程被中断而失败
+     */
+    private static boolean isInterrupted(Throwable e) {
+        return Thread.currentThread().isInterrupted() || e.getClass() == InterruptedIOException.class;
+    }
+
+    /**
+     * 异步执行调用，如果相同key的调用正在进行中则复用其结果
+     * @param key 调用的唯一标识，一般为请求URL
+     * @param loader 真正的异步调用
+     * @return 调用结果，每个调用方拿到独立的Future，取消不会影响其他调用方
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> loader) {
+        totalCount.incrementAndGet();
+
+        CompletableFuture<Object> joined = join(key);
+        if (joined != null) {
+            deduplicatedCount.incrementAndGet();
+            return (CompletableFuture<T>) joined.copy();
+        }
+        String flightKey = flightKey(key);
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, created);
+        if (existing != null) {
+            deduplicatedCount.incrementAndGet();
+            return (CompletableFuture<T>) existing.copy();
+        }
+
+        CompletableFuture<T> result;
+        try {
+            result = loader.get();
+        } catch (Throwable e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, e) -> {
+            inFlight.remove(flightKey, created);
+            if (e != null) {
+                created.completeExceptionally(e);
+            } else {
+                created.complete(value);
+            }
+        });
+        return (CompletableFuture<T>) created.copy();
+    }
+
+    /**
+     * 后台调用优先加入相同key正在进行的交互调用
+     * @return 可以加入的调用，没有时返回null
+     */
+    private CompletableFuture<Object> join(String key) {
+        if (GitHubRequestPriority.current() == GitHubRequestPriority.INTERACTIVE) {
+            return null;
+        }
+        return inFlight.get(INTERACTIVE_PREFIX + key);
+    }
+
+    /**
+     * 按当前线程的优先级区分合并的key
+     */
+    private static String flightKey(String key) {
+        return GitHubRequestPriority.current() == GitHubRequestPriority.INTERACTIVE ? INTERACTIVE_PREFIX + key : key;
+    }
+
+    private Object await(CompletableFuture<Object> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待合并的GitHub请求时被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    public long getDeduplicatedCount() {
+        return deduplicatedCount.get();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 发起线程被中断导致的失败，等待中的调用方收到后重新执行
+     */
+    private static class LeaderInterruptedException extends IOException {
+        private LeaderInterruptedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * 可抛出IO异常的调用
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws IOException;
+    }
+}
@@ -0,0 +1,196 @@
+package com.donnan.git.guru.business.github;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * GitHub仓库tarball流式读取
+ * 边解压边解析tar(ustar + pax)，只读取需要的文件，其余内容直接跳过，不落盘也不整体加载到内存。
+ * GitHub的tarball中所有路径都以 {owner}-{repo}-{sha}/ 开头，回调中的路径已去掉该前缀。
+ * @author Donnan
+ */
+@Slf4j
+public class GitHubTarballReader {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // 单个文件读取的最大字节数
+    private final int maxFileBytes;
+
+    // 所有文件合计读取的最大字节数
+    private final long byteBudget;
+
+    public GitHubTarballReader(int maxFileBytes, long byteBudget) {
+        this.maxFileBytes = maxFileBytes;
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * 读取tarball
+     * @param gzipped gzip压缩的tar流
+     * @param wanted 是否需要读取该路径的文件
+     * @param consumer 文件内容回调，返回false时停止读取
+     * @return 实际读取的文件内容字节数
+     */
+    public long read(InputStream gzipped, Predicate<String> wanted, EntryConsumer consumer) throws IOException {
+        long used = 0;
+        InputStream in = new GZIPInputStream(new BufferedInputStream(gzipped, BUFFER_SIZE), BUFFER_SIZE);
+
+        String nextPath = null;
+        while (true) {
+            byte[] header = in.readNBytes(BLOCK_SIZE);
+            if (header.length < BLOCK_SIZE || isZeroBlock(header)) {
+                break;
+            }
+
+            String path = nextPath != null ? nextPath : headerPath(header);
+            nextPath = null;
+            long size = parseOctal(header, 124, 12);
+            long padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+            byte type = header[156];
+
+            if (type == 'x' || type == 'L') {
+                // pax扩展头或GNU长文件名，作用于下一个条目
+                byte[] data = in.readNBytes((int) size);
+                nextPath = type == 'x' ? paxPath(data) : cString(data, 0, data.length);
+                in.skipNBytes(padding);
+                continue;
+            }
+
+            String relativePath = stripRoot(path);
+            boolean regularFile = type == '0' || type == 0;
+            if (!regularFile || relativePath == null || !wanted.test(relativePath)) {
+                in.skipNBytes(size + padding);
+                continue;
+            }
+
+            int length = (int) Math.min(size, Math.min(maxFileBytes, byteBudget - used));
+            byte[] content = in.readNBytes(length);
+            in.skipNBytes(size - content.length + padding);
+            used += content.length;
+            int textLength = content.length;
+            if (content.length < size) {
+                // 截断时回退到完整字符的边界
+                textLength = GitHubClient.utf8Boundary(content, content.length);
+                log.debug("tarball中的文件 {} 超过{}字节，已截断为{}字节", relativePath, length, textLength);
+            }
+
+            if (!consumer.accept(relativePath, new String(content, 0, textLength, StandardCharsets.UTF_8))) {
+                break;
+            }
+            if (used >= byteBudget) {
+                log.warn("tarball读取达到字节预算({})，停止读取", byteBudget);
+                break;
+            }
+        }
+        return used;
+    }
+
+    private boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ustar格式的路径为 prefix + "/" + name
+     */
+    private String headerPath(byte[] header) {
+        String name = cString(header, 0, 100);
+        String magic = cString(header, 257, 6);
+        if (magic.startsWith("ustar")) {
+            String prefix = cString(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * 解析pax扩展头中的path记录，记录格式为 "长度 key=value\n"
+     */
+    private String paxPath(byte[] data) {
+        int offset = 0;
+        while (offset < data.length) {
+            int space = offset;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            if (space >= data.length) {
+                break;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, offset, space - offset, StandardCharsets.UTF_8));
+            } catch (NumberFormatException e) {
+                break;
+            }
+            if (length <= 0 || offset + length > data.length) {
+                break;
+            }
+            String record = new String(data, space + 1, offset + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                return record.substring("path=".length());
+            }
+            offset += length;
+        }
+        return null;
+    }
+
+    /**
+     * 去掉tarball的根目录，根目录本身返回null
+     */
+    private String stripRoot(String path) {
+        if (path == null) {
+            return null;
+        }
+        int slash = path.indexOf('/');
+        if (slash < 0 || slash == path.length() - 1) {
+            return null;
+        }
+        return path.substring(slash + 1);
+    }
+
+    private long parseOctal(byte[] header, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    private String cString(byte[] data, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && data[end] != 0) {
+            end++;
+        }
+        return new String(data, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 文件内容回调
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        boolean accept(String path, String content);
+    }
+}
@@ -0,0 +1,502 @@
+package com.donnan.git.guru.business.github;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * GitHub token调度器
+ * 根据响应头中的 X-RateLimit-Remaining / X-RateLimit-Reset / Retry-After 维护每个token的剩余额度，
+ * 每次选择剩余额度最多的token；所有token耗尽时阻塞调用方直到最早的重置时间。
+ * 每个token按响应头 X-RateLimit-Limit 中的总额度保留一部分只给交互请求使用，有交互请求在等待时后台请求让行。
+ * 配置了共享账本时，额度以Redis中的账本为准，本地每次租用一批额度，用完后再租。
+ * @author Donnan
+ */
+@Slf4j
+public class GitHubTokenScheduler {
+
+    // GitHub对PAT的默认额度(每小时)，在拿到第一个响应头之前使用
+    public static final int DEFAULT_LIMIT = 5000;
+
+    // 没有Reset响应头时，耗尽的token默认等待时长
+    private static final long DEFAULT_RESET_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final List<TokenState> tokens;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    // 拿到 X-RateLimit-Limit 响应头之前每个token的默认额度
+    private final int defaultLimit;
+
+    // 每个token为交互请求保留的额度比例，后台请求不能使用
+    private final double interactiveReserveRatio;
+
+    // 正在等待token的交互请求数
+    private int interactiveWaiting;
+
+    // 集群共享的额度账本，为null时只在本地计数
+    private final RedisGitHubTokenLedger ledger;
+
+    // 每次从账本租用的额度
+    private final int leaseSize;
+
+    public GitHubTokenScheduler(List<String> tokens) {
+        this(tokens, 0, null, 0);
+    }
+
+    /**
+     * @param tokens token列表
+     * @param interactiveReserveRatio 每个token为交互请求保留的额度比例
+     * @param ledger 集群共享的额度账本，为null时只在本地计数
+     * @param leaseSize 每次从账本租用的额度
+     */
+    public GitHubTokenScheduler(List<String> tokens, double interactiveReserveRatio,
+                                RedisGitHubTokenLedger ledger, int leaseSize) {
+        this(tokens, DEFAULT_LIMIT, interactiveReserveRatio, ledger, leaseSize);
+    }
+
+    /**
+     * @param tokens token列表
+     * @param defaultLimit 拿到响应头之前每个token的默认额度，例如搜索接口为每分钟30次
+     * @param interactiveReserveRatio 每个token为交互请求保留的额度比例
+     * @param ledger 集群共享的额度账本，为null时只在本地计数
+     * @param leaseSize 每次从账本租用的额度
+     */
+    public GitHubTokenScheduler(List<String> tokens, int defaultLimit, double interactiveReserveRatio,
+                                RedisGitHubTokenLedger ledger, int leaseSize) {
+        this.ledger = ledger;
+        this.leaseSize = Math.max(leaseSize, 1);
+        this.defaultLimit = Math.max(defaultLimit, 1);
+        this.interactiveReserveRatio = Math.min(Math.max(interactiveReserveRatio, 0), 1);
+        if (tokens == null || tokens.isEmpty()) {
+            throw new IllegalStateException("GitHub认证token未配置");
+        }
+        this.tokens = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            if (StringUtils.isNotBlank(token)) {
+                this.tokens.add(new TokenState(token.trim(), this.defaultLimit));
+            }
+        }
+        if (this.tokens.isEmpty()) {
+            throw new IllegalStateException("GitHub认证token未配置");
+        }
+    }
+
+    /**
+     * 获取剩余额度最多的token，所有token耗尽时阻塞到最早的重置时间
+     * @param priority 请求优先级
+     * @return token
+     * @throws InterruptedIOException 等待过程中线程被中断
+     */
+    public String acquire(GitHubRequestPriority priority) throws InterruptedIOException {
+        return acquire(priority, null);
+    }
+
+    /**
+     * 获取剩余额度最多的token，尽量避开指定的token
+     * @param priority 请求优先级
+     * @param avoid 尽量不使用的token(例如对冲请求中另一路正在使用的token)，没有其他可用token时仍会使用
+     * @return token
+     * @throws InterruptedIOException 等待过程中线程被中断
+     */
+    public String acquire(GitHubRequestPriority priority, String avoid) throws InterruptedIOException {
+        lock.lock();
+        boolean interactive = priority == GitHubRequestPriority.INTERACTIVE;
+        try {
+            int renewals = 0;
+            while (true) {
+                long now = System.currentTimeMillis();
+                TokenState selected = select(now, priority, avoid);
+                if (selected != null && needsRenewal(selected) && renewals++ < tokens.size()) {
+                    // 续租期间释放锁，续租完成后重新选择
+                    renew(selected);
+                    continue;
+                }
+                if (selected != null && !needsRenewal(selected)) {
+                    return take(selected);
+                }
+
+                long waitMillis = waitMillis(now, priority);
+                if (interactive) {
+                    interactiveWaiting++;
+                    log.warn("所有GitHub token额度已耗尽，等待{}秒后重试", TimeUnit.MILLISECONDS.toSeconds(waitMillis));
+                } else {
+                    log.debug("后台请求可用的GitHub token额度不足，等待{}秒后重试", TimeUnit.MILLISECONDS.toSeconds(waitMillis));
+                }
+                try {
+                    available.await(waitMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("等待GitHub token额度时被中断");
+                } finally {
+                    renewals = 0;
+                    if (interactive) {
+                        interactiveWaiting--;
+                        available.signalAll();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 非阻塞地获取token，供异步调用使用
+     * @param priority 请求优先级
+     * @return token，没有可用的token时返回null
+     */
+    public String tryAcquire(GitHubRequestPriority priority) {
+        lock.lock();
+        try {
+            for (int renewals = 0; renewals <= tokens.size(); renewals++) {
+                TokenState selected = select(System.currentTimeMillis(), priority, null);
+                if (selected == null) {
+                    return null;
+                }
+                if (!needsRenewal(selected)) {
+                    return take(selected);
+                }
+                renew(selected);
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 距离下一个token可用的时长
+     * @param priority 请求优先级
+     * @return 毫秒，至少为1
+     */
+    public long millisUntilAvailable(GitHubRequestPriority priority) {
+        lock.lock();
+        try {
+            return waitMillis(System.currentTimeMillis(), priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 选择剩余额度最多的可用token，只在持有锁时调用
+     * 后台请求只能使用保留额度以外的部分，且有交互请求在等待时不分配；正在续租的token不参与选择
+     */
+    private TokenState select(long now, GitHubRequestPriority priority, String avoid) {
+        if (priority == GitHubRequestPriority.BACKGROUND && interactiveWaiting > 0) {
+            return null;
+        }
+        TokenState selected = null;
+        TokenState avoided = null;
+        for (TokenState state : tokens) {
+            state.refresh(now);
+            if (state.renewing || !state.isReady(now, floor(state, priority))) {
+                continue;
+            }
+            if (state.token.equals(avoid)) {
+                avoided = state;
+            } else if (selected == null || state.remaining > selected.remaining) {
+                selected = state;
+            }
+        }
+        return selected != null ? selected : avoided;
+    }
+
+    /**
+     * 本地租约用完的token需要先从账本续租
+     */
+    private boolean needsRenewal(TokenState state) {
+        return ledger != null && state.leased <= 0;
+    }
+
+    /**
+     * 预占一次额度，真实值以响应头为准，只在持有锁时调用
+     */
+    private String take(TokenState state) {
+        state.remaining--;
+        if (ledger != null) {
+            state.leased--;
+        }
+        return state.token;
+    }
+
+    /**
+     * 从账本续租额度，同时提交本地观察到的响应头
+     * 调用时持有锁，访问Redis期间释放锁，避免Redis变慢时阻塞所有token的选择和响应头更新，返回前重新加锁
+     */
+    private void renew(TokenState state) {
+        state.renewing = true;
+        int observedRemaining = state.observedRemaining;
+        long observedResetAt = state.observedResetAt;
+        long blockedUntil = state.blockedUntil;
+        RedisGitHubTokenLedger.Lease lease = null;
+        lock.unlock();
+        try {
+            lease = ledger.lease(state.token, leaseSize, observedRemaining, observedResetAt, blockedUntil);
+        } finally {
+            lock.lock();
+            state.renewing = false;
+            if (lease == null) {
+                // 账本不可用时退化为本地计数
+                state.leased = leaseSize;
+            } else {
+                apply(state, lease, observedRemaining);
+            }
+            available.signalAll();
+        }
+    }
+
+    /**
+     * 把被限流的情况立即同步给其他节点，调用时不持有锁
+     */
+    private void publish(TokenState state, int remaining, long resetAt, long blockedUntil, int observedRemaining) {
+        RedisGitHubTokenLedger.Lease lease = ledger.lease(state.token, 0, remaining, resetAt, blockedUntil);
+        if (lease == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            apply(state, lease, observedRemaining);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 用账本返回的结果覆盖本地状态，只在持有锁时调用
+     * @param submittedRemaining 本次提交给账本的观察值，提交后又有新的观察时保留新的观察
+     */
+    private void apply(TokenState state, RedisGitHubTokenLedger.Lease lease, int submittedRemaining) {
+        state.leased += lease.getGranted();
+        // 本地看到的剩余额度 = 账本中未租出的额度 + 本节点手中的租约
+        state.remaining = lease.getRemaining() + Math.max(state.leased, 0);
+        state.resetAt = lease.getResetAt();
+        state.blockedUntil = Math.max(state.blockedUntil, lease.getBlockedUntil());
+        if (state.observedRemaining == submittedRemaining) {
+            state.observedRemaining = -1;
+            state.observedResetAt = 0;
+        }
+    }
+
+    /**
+     * 计算最早可用的token需要等待的时长，只在持有锁时调用
+     */
+    private long waitMillis(long now, GitHubRequestPriority priority) {
+        long earliestReady = Long.MAX_VALUE;
+        for (TokenState state : tokens) {
+            state.refresh(now);
+            earliestReady = Math.min(earliestReady, state.readyAt(now, floor(state, priority)));
+        }
+        return Math.max(earliestReady - now, 1);
+    }
+
+    /**
+     * 该优先级的请求在该token上必须保留的额度，按token实际的总额度计算
+     */
+    private int floor(TokenState state, GitHubRequestPriority priority) {
+        return priority == GitHubRequestPriority.INTERACTIVE ? 0 : (int) (state.limit * interactiveReserveRatio);
+    }
+
+    /**
+     * 根据响应头更新token的额度
+     * @param token 本次请求使用的token
+     * @param statusCode 响应状态码
+     * @param limit X-RateLimit-Limit
+     * @param remaining X-RateLimit-Remaining
+     * @param reset X-RateLimit-Reset(epoch秒)
+     * @param retryAfter Retry-After(秒)
+     */
+    public void update(String token, int statusCode, String limit, String remaining, String reset, String retryAfter) {
+        TokenState state;
+        boolean publish = false;
+        int publishRemaining = 0;
+        long publishResetAt = 0;
+        long publishBlockedUntil = 0;
+        int submittedRemaining = -1;
+        lock.lock();
+        try {
+            state = find(token);
+            if (state == null) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            long resetAt = parseLong(reset, -1) * 1000;
+            int headerRemaining = (int) parseLong(remaining, -1);
+            int headerLimit = (int) parseLong(limit, -1);
+            if (headerLimit > 0) {
+                state.limit = headerLimit;
+            }
+
+            if (headerRemaining >= 0) {
+                if (resetAt > state.resetAt) {
+                    // 进入新的计费窗口，以响应头为准
+                    state.remaining = headerRemaining;
+                } else {
+                    // 同一窗口内并发请求的响应可能乱序到达，取较小值
+                    state.remaining = Math.min(state.remaining, headerRemaining);
+                }
+            }
+            if (resetAt > 0) {
+                state.resetAt = resetAt;
+            }
+
+            long retryAfterSeconds = parseLong(retryAfter, -1);
+            boolean limited = false;
+            if (retryAfterSeconds >= 0) {
+                // 次级限流，在Retry-After之前不再使用该token
+                state.blockedUntil = now + TimeUnit.SECONDS.toMillis(retryAfterSeconds);
+                limited = true;
+                log.warn("GitHub token触发次级限流，状态码: {}，{}秒后恢复", statusCode, retryAfterSeconds);
+            } else if ((statusCode == 403 || statusCode == 429) && state.remaining <= 0 && state.resetAt <= now) {
+                state.resetAt = now + DEFAULT_RESET_MILLIS;
+                limited = true;
+            }
+
+            if (ledger != null) {
+                // 记录观察到的响应头，下次续租时一并提交；被限流时立即同步给其他节点
+                if (headerRemaining >= 0) {
+                    state.observedRemaining = headerRemaining;
+                    state.observedResetAt = Math.max(resetAt, 0);
+                }
+                if (limited) {
+                    publish = true;
+                    publishRemaining = Math.max(state.remaining, 0);
+                    publishResetAt = state.resetAt;
+                    publishBlockedUntil = state.blockedUntil;
+                    submittedRemaining = state.observedRemaining;
+                }
+            }
+
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (publish) {
+            // 在锁外访问Redis
+            publish(state, publishRemaining, publishResetAt, publishBlockedUntil, submittedRemaining);
+        }
+    }
+
+    /**
+     * 当前所有token的剩余额度之和
+     */
+    public int totalRemaining() {
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            int total = 0;
+            for (TokenState state : tokens) {
+                state.refresh(now);
+                total += Math.max(state.remaining, 0);
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * token数量
+     */
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * 指定序号的token的剩余额度，用于监控，序号即配置中的顺序
+     */
+    public int remaining(int index) {
+        lock.lock();
+        try {
+            TokenState state = tokens.get(index);
+            state.refresh(System.currentTimeMillis());
+            return Math.max(state.remaining, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private TokenState find(String token) {
+        for (TokenState state : tokens) {
+            if (state.token.equals(token)) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 单个token的额度状态，只在持有锁时访问
+     */
+    private static class TokenState {
+        private final String token;
+        // 总额度，以 X-RateLimit-Limit 响应头为准
+        private int limit;
+        private int remaining;
+        private long resetAt;
+        private long blockedUntil;
+        // 本节点手中尚未使用的租约
+        private int leased;
+        // 上次续租后观察到的响应头，-1表示没有
+        private int observedRemaining = -1;
+        // 正在从账本续租，续租期间不参与选择
+        private boolean renewing;
+        private long observedResetAt;
+
+        private TokenState(String token, int limit) {
+            this.token = token;
+            this.limit = limit;
+            this.remaining = limit;
+        }
+
+        /**
+         * 过了重置时间后恢复默认额度，等待下一次响应头校准
+         */
+        private void refresh(long now) {
+            if (resetAt > 0 && now >= resetAt) {
+                remaining = limit;
+                resetAt = 0;
+            } else if (remaining <= 0 && resetAt <= 0) {
+                resetAt = now + DEFAULT_RESET_MILLIS;
+            }
+        }
+
+        /**
+         * @param floor 需要保留的额度
+         */
+        private boolean isReady(long now, int floor) {
+            return remaining > floor && now >= blockedUntil;
+        }
+
+        private long readyAt(long now, int floor) {
+            if (remaining > floor) {
+                return blockedUntil;
+            }
+            // 额度不足时要等到重置，没有重置时间时按默认时长估算
+            long reset = resetAt > 0 ? resetAt : now + DEFAULT_RESET_MILLIS;
+            return Math.max(blockedUntil, reset);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.donnan.git.guru.business.github;
+
+import com.donnan.git.guru.business.constant.RedisConstant;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Redis的GitHub token额度账本
+ * 集群内所有节点共享每个token的剩余额度、重置时间和次级限流截止时间，通过Lua脚本原子更新；
+ * 节点每次租用一批额度在本地消耗，用完后再租，同时把本地观察到的响应头合并进账本。
+ * @author Donnan
+ */
+@Slf4j
+public class RedisGitHubTokenLedger {
+
+    // 账本记录的过期时间，长时间没有节点使用时自动清理
+    private static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(2);
+
+    /**
+     * KEYS[1]: 账本key
+     * ARGV: 租用数量, 当前时间, 默认额度, 观察到的剩余额度(-1表示没有), 观察到的重置时间, 次级限流截止时间, 过期时间
+     * 返回: {租到的数量, 账本剩余额度, 重置时间, 次级限流截止时间}
+     */
+    private static final String LEASE_SCRIPT = """
+            local key = KEYS[1]
+            local count = tonumber(ARGV[1])
+            local now = tonumber(ARGV[2])
+            local remaining = tonumber(redis.call('HGET', key, 'remaining') or ARGV[3])
+            local resetAt = tonumber(redis.call('HGET', key, 'resetAt') or '0')
+            local blockedUntil = tonumber(redis.call('HGET', key, 'blockedUntil') or '0')
+            if resetAt > 0 and now >= resetAt then
+                remaining = tonumber(ARGV[3])
+                resetAt = 0
+            end
+            local observedRemaining = tonumber(ARGV[4])
+            local observedResetAt = tonumber(ARGV[5])
+            if observedResetAt > now then
+                if observedRemaining >= 0 then
+                    if observedResetAt > resetAt then
+                        remaining = observedRemaining
+                    else
+                        remaining = math.min(remaining, observedRemaining)
+                    end
+                end
+                if observedResetAt > resetAt then
+                    resetAt = observedResetAt
+                end
+            elseif observedResetAt <= 0 and observedRemaining >= 0 then
+                remaining = math.min(remaining, observedRemaining)
+            end
+            local blocked = tonumber(ARGV[6])
+            if blocked > blockedUntil then
+                blockedUntil = blocked
+            end
+            local granted = 0
+            if now >= blockedUntil then
+                granted = math.max(math.min(count, remaining), 0)
+            end
+            remaining = remaining - granted
+            redis.call('HSET', key, 'remaining', remaining, 'resetAt', resetAt, 'blockedUntil', blockedUntil)
+            redis.call('PEXPIRE', key, ARGV[7])
+            return {granted, remaining, resetAt, blockedUntil}
+            """;
+
+    private static final DefaultRedisScript<List> SCRIPT = new DefaultRedisScript<>(LEASE_SCRIPT, List.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // 区分REST、GraphQL和搜索的额度
+    private final String namespace;
+
+    // 账本中没有记录时每个token的默认额度
+    private final int defaultLimit;
+
+    // token到账本key的映射，key中只保存token的摘要
+    private final Map<String, String> keys = new ConcurrentHashMap<>();
+
+    public RedisGitHubTokenLedger(StringRedisTemplate stringRedisTemplate, String namespace) {
+        this(stringRedisTemplate, namespace, GitHubTokenScheduler.DEFAULT_LIMIT);
+    }
+
+    public RedisGitHubTokenLedger(StringRedisTemplate stringRedisTemplate, String namespace, int defaultLimit) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.namespace = namespace;
+        this.defaultLimit = defaultLimit;
+    }
+
+    /**
+     * 租用额度，同时合并本节点观察到的额度信息
+     * @param token token
+     * @param count 租用数量，为0时只提交观察结果
+     * @param observedRemaining 响应头中的剩余额度，-1表示没有
+     * @param observedResetAt 响应头中的重置时间(毫秒)，0表示没有
+     * @param blockedUntil 次级限流截止时间(毫秒)，0表示没有
+     * @return 租用结果，Redis不可用时返回null
+     */
+    public Lease lease(String token, int count, int observedRemaining, long observedResetAt, long blockedUntil) {
+        try {
+            List<?> result = stringRedisTemplate.execute(SCRIPT, List.of(key(token)),
+                    String.valueOf(count),
+                    String.valueOf(System.currentTimeMillis()),
+                    String.valueOf(defaultLimit),
+                    String.valueOf(observedRemaining),
+                    String.valueOf(observedResetAt),
+                    String.valueOf(blockedUntil),
+                    String.valueOf(TTL_MILLIS));
+            if (result == null || result.size() < 4) {
+                return null;
+            }
+            return new Lease(toInt(result.get(0)), toInt(result.get(1)), toLong(result.get(2)), toLong(result.get(3)));
+        } catch (Exception e) {
+            log.warn("从Redis租用GitHub token额度失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String key(String token) {
+        return keys.computeIfAbsent(token, value -> RedisConstant.GITHUB_TOKEN_BUDGET_PREFIX + namespace + ":" + digest(value));
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int toInt(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    private static long toLong(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    /**
+     * 租用结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Lease {
+        // 本次租到的数量
+        private final int granted;
+        // 账本中未被租出的剩余额度
+        private final int remaining;
+        private final long resetAt;
+        private final long blockedUntil;
+    }
+}
@@ -2,11 +2,46 @@ package com.donnan.git.guru.business.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.donnan.git.guru.business.entity.github.pojo.GitHubRepo;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
 import org.mapstruct.Mapper;
 
+import java.util.List;
+
 /**
  * @author Donnan
  */
 @Mapper
 public interface GitHubRepoMapper extends BaseMapper<GitHubRepo> {
+
+    /**
+     * 批量写入仓库，一条多行 INSERT ... ON DUPLICATE KEY UPDATE，已存在的仓库更新为最新数据
+     * @return 受影响的行数，新插入的行计1，有变化的已有行计2
+     */
+    @Insert("""
+            <script>
+            INSERT INTO github_repo (
+            id, name, full_name, html_url, description, created_at, updated_at, pushed_at, size,
+            stargazers_count, watchers_count, language, forks_count, open_issues_count, topics,
+            owner_login
+            ) VALUES
+            <foreach collection='repos' item='repo' separator=','>
+                (
+                #{repo.id}, #{repo.name}, #{repo.fullName}, #{repo.htmlUrl}, #{repo.description},
+                #{repo.createdAt}, #{repo.updatedAt}, #{repo.pushedAt}, #{repo.size},
+                #{repo.stargazersCount}, #{repo.watchersCount}, #{repo.language},
+                #{repo.forksCount}, #{repo.openIssuesCount}, #{repo.topics}, #{repo.ownerLogin}
+                )
+            </foreach>
+            ON DUPLICATE KEY UPDATE
+                name = VALUES(name), full_name = VALUES(full_name), html_url = VALUES(html_url),
+                description = VALUES(description), created_at = VALUES(created_at),
+                updated_at = VALUES(updated_at), pushed_at = VALUES(pushed_at), size = VALUES(size),
+                stargazers_count = VALUES(stargazers_count),
+                watchers_count = VALUES(watchers_count), language = VALUES(language),
+                forks_count = VALUES(forks_count), open_issues_count = VALUES(open_issues_count),
+                topics = VALUES(topics), owner_login = VALUES(owner_login)
+            </script>
+            """)
+    int upsertBatch(@Param("repos") List<GitHubRepo> repos);
 }
@@ -2,11 +2,51 @@ package com.donnan.git.guru.business.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.donnan.git.guru.business.entity.github.pojo.GitHubUser;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
 import org.mapstruct.Mapper;
 
+import java.util.List;
+
 /**
  * @author Donnan
  */
 @Mapper
 public interface GitHubUserMapper extends BaseMapper<GitHubUser> {
-}
\ No newline at end of file
+
+    /**
+     * 批量写入用户，一条多行 INSERT ... ON DUPLICATE KEY UPDATE，已存在的用户更新为最新数据
+     * @return 受影响的行数，新插入的行计1，有变化的已有行计2
+     */
+    @Insert("""
+            <script>
+            INSERT INTO github_user (
+            id, login, avatar_url, html_url, name, company, blog, location, email, bio,
+            twitter_username, public_repos, public_gists, followers, following, created_at,
+            updated_at, topic, total_score, user_score, repo_score, issues, commits, prs, pr_reviews
+            ) VALUES
+            <foreach collection='users' item='user' separator=','>
+                (
+                #{user.id}, #{user.login}, #{user.avatarUrl}, #{user.htmlUrl}, #{user.name},
+                #{user.company}, #{user.blog}, #{user.location}, #{user.email}, #{user.bio},
+                #{user.twitterUsername}, #{user.publicRepos}, #{user.publicGists},
+                #{user.followers}, #{user.following}, #{user.createdAt}, #{user.updatedAt},
+                #{user.topic}, #{user.totalScore}, #{user.userScore}, #{user.repoScore},
+                #{user.issues}, #{user.commits}, #{user.prs}, #{user.prReviews}
+                )
+            </foreach>
+            ON DUPLICATE KEY UPDATE
+                login = VALUES(login), avatar_url = VALUES(avatar_url), html_url = VALUES(html_url),
+                name = VALUES(name), company = VALUES(company), blog = VALUES(blog),
+                location = VALUES(location), email = VALUES(email), bio = VALUES(bio),
+                twitter_username = VALUES(twitter_username), public_repos = VALUES(public_repos),
+                public_gists = VALUES(public_gists), followers = VALUES(followers),
+                following = VALUES(following), created_at = VALUES(created_at),
+                updated_at = VALUES(updated_at), topic = VALUES(topic),
+                total_score = VALUES(total_score), user_score = VALUES(user_score),
+                repo_score = VALUES(repo_score), issues = VALUES(issues), commits = VALUES(commits),
+                prs = VALUES(prs), pr_reviews = VALUES(pr_reviews)
+            </script>
+            """)
+    int upsertBatch(@Param("users") List<GitHubUser> users);
+}
@@ -14,6 +14,8 @@ public interface GitHubService {
 
     void fetchGithubUserDataPeriodically();
 
+    void refreshUsers(List<GitHubUser> users);
+
     GitHubUser addGitHubUserByLogin(String login);
 
     GitHubRepo getGitHubRepoByLoginAndRepoName(String login, String repoName);
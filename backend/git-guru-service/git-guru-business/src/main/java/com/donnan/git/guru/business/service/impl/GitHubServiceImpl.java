@@ -17,14 +17,22 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.donnan.git.guru.business.constant.GitHubConstant;
 import com.donnan.git.guru.business.constant.RedisConstant;
+import com.donnan.git.guru.business.crawler.KnownUserFilter;
+import com.donnan.git.guru.business.crawler.StagedPipeline;
+import com.donnan.git.guru.business.crawler.FollowerGraphCrawler;
+import com.donnan.git.guru.business.crawler.UserFreshnessTracker;
+import com.donnan.git.guru.business.crawler.UserSearchDiscovery;
 import com.donnan.git.guru.business.entity.github.dto.*;
 import com.donnan.git.guru.business.entity.github.pojo.ESGitHubRepoContent;
 import com.donnan.git.guru.business.entity.github.pojo.GitHubRepo;
 import com.donnan.git.guru.business.entity.github.pojo.GitHubUser;
 import com.donnan.git.guru.business.github.GitHubClient;
+import com.donnan.git.guru.business.github.GitHubGraphQLClient;
+import com.donnan.git.guru.business.github.GitHubRequestPriority;
 import com.donnan.git.guru.business.mapper.GitHubRepoMapper;
 import com.donnan.git.guru.business.mapper.GitHubUserMapper;
 import com.donnan.git.guru.business.service.GitHubService;
+import com.google.common.collect.Lists;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -37,15 +45,25 @@ import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransfo
 import org.springframework.ai.rag.preretrieval.query.transformation.RewriteQueryTransformer;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -56,7 +74,48 @@ import java.util.stream.Collectors;
 @Slf4j
 public class GitHubServiceImpl implements GitHubService {
 
+    // 每批获取用户画像的用户数
+    private static final int PROFILE_BATCH_SIZE = 20;
+
+    // 每次向发现策略请求的候选用户数
+    private static final int DISCOVER_BATCH_SIZE = 100;
+
+    // 连续多少轮没有发现新用户时停止发现，候选用户都已入库时避免一直请求GitHub
+    private static final int DISCOVER_MAX_IDLE_ROUNDS = 3;
+
+    // 流水线各阶段输入队列的容量
+    private static final int PIPELINE_QUEUE_CAPACITY = 100;
+
+    // 每次定时任务的目标候选用户数
+    @Value("${github.crawler.target:" + GitHubConstant.GITHUB_USER_RANDOM_NUMBER + "}")
+    private int crawlTarget;
+
+    // 每次定时任务最多的发现轮数，每轮请求 DISCOVER_BATCH_SIZE 个候选用户
+    @Value("${github.crawler.discover.max.rounds:100}")
+    private int discoverMaxRounds;
+
+    // 补全阶段的并发数，每个并发同时处理一批用户
+    @Value("${github.crawler.enrich.workers:4}")
+    private int enrichWorkers;
+
+    // 评分阶段的并发数
+    @Value("${github.crawler.score.workers:2}")
+    private int scoreWorkers;
+
+    // 每次批量写入的用户数
+    @Value("${github.crawler.persist.batch:50}")
+    private int persistBatchSize;
+
+    // 每条批量写入语句的最大行数
+    @Value("${github.crawler.persist.chunk:500}")
+    private int upsertChunkSize;
+
+    // 添加单个用户时等待GitHub数据的最长时间(秒)
+    @Value("${github.user.add.timeout:20}")
+    private long addUserTimeoutSeconds;
+
     private final GitHubClient gitHubClient;
+    private final GitHubGraphQLClient gitHubGraphQLClient;
     private final GitHubUserMapper gitHubUserMapper;
     private final GitHubRepoMapper gitHubRepoMapper;
     private final ElasticsearchClient elasticsearchClient;
@@ -64,92 +123,175 @@ public class GitHubServiceImpl implements GitHubService {
     private final DashScopeEmbeddingModel embeddingModel;
     private final MultiQueryExpander multiQueryExpander;
     private final RewriteQueryTransformer rewriteQueryTransformer;
+    private final KnownUserFilter knownUserFilter;
+    private final UserSearchDiscovery userSearchDiscovery;
+    private final TransactionTemplate transactionTemplate;
+    private final UserFreshnessTracker userFreshnessTracker;
+    private final FollowerGraphCrawler followerGraphCrawler;
+
+    // 添加单个用户时并发请求GitHub的虚拟线程
+    private final ExecutorService fanOutExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     /**
      * 定时任务，每天22点执行
+     * 按 发现 → 补全 → 评分 → 入库 分阶段并发执行，网络请求、计算和数据库写入同时进行
      */
     @Scheduled(cron = "${github.fetch.cron:0 0 22 * * ?}")
     @Override
     public void fetchGithubUserDataPeriodically() {
-        log.info("开始添加随机数量的用户...");
-        int fetchSize = GitHubConstant.GITHUB_USER_RANDOM_NUMBER;
+        log.info("开始抓取GitHub用户，目标候选用户数: {}", crawlTarget);
+        int successCount = ingest("github-ingest", this::discoverCandidates);
+        knownUserFilter.save();
+        log.info("本次定时任务完成，成功添加 {} 个用户", successCount);
+    }
+
+    /**
+     * 重新抓取并评分已入库的用户，复用抓取任务的补全、评分和入库阶段
+     */
+    @Override
+    public void refreshUsers(List<GitHubUser> users) {
+        int successCount = ingest("github-refresh", emitter -> {
+            for (GitHubUser user : users) {
+                GitHubUserDto dto = new GitHubUserDto();
+                dto.setId(user.getId());
+                dto.setLogin(user.getLogin());
+                emitter.emit(dto);
+            }
+        });
+        log.info("刷新完成，{} 个用户中成功更新 {} 个", users.size(), successCount);
+    }
+
+    /**
+     * 执行 来源 → 补全 → 评分 → 入库 流水线
+     * @param name 流水线名称，用于日志
+     * @param source 候选用户来源
+     * @return 成功写入的用户数
+     */
+    private int ingest(String name, StagedPipeline.Source<GitHubUserDto> source) {
+        AtomicInteger successCount = new AtomicInteger();
         try {
-            List<GitHubUserDto> users = gitHubClient.getRandomUserByPage(fetchSize);
+            StagedPipeline.source(name, "discover", source)
+                    // 按批次通过GraphQL获取用户画像，一次请求代替每个用户的三次REST调用
+                    .batch("group", PROFILE_BATCH_SIZE)
+                    .stage("enrich", enrichWorkers, PIPELINE_QUEUE_CAPACITY, this::enrichUsers)
+                    .stage("score", scoreWorkers, PIPELINE_QUEUE_CAPACITY, this::scoreUser)
+                    .batch("flush", persistBatchSize)
+                    .sink("persist", 1, PIPELINE_QUEUE_CAPACITY, batch -> {
+                        List<GitHubUser> users = batch.stream().map(ScoredUser::user).toList();
+                        transactionTemplate.executeWithoutResult(status -> batchInsertData(
+                                users, batch.stream().flatMap(scored -> scored.repos().stream()).toList()));
+                        // 入库成功后关系图中的用户才算处理完成
+                        followerGraphCrawler.acknowledge(users.stream().map(GitHubUser::getId).toList());
+                        successCount.addAndGet(batch.size());
+                    })
+                    .run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("流水线 {} 被中断，已写入 {} 个用户", name, successCount.get());
+        } catch (Exception e) {
+            log.error("执行流水线 {} 时发生异常: {}", name, e.getMessage(), e);
+        }
+        return successCount.get();
+    }
+
+    /**
+     * 发现阶段：发现候选用户并过滤已存在的用户，直到达到目标数量或没有更多用户
+     * 优先从平台用户的关注关系图中发现，关系图暂时没有待访问用户时再使用搜索或随机发现；
+     * 发现的用户都已存在时不会无限请求，达到最大轮数或连续多轮没有新用户时提前结束
+     */
+    private void discoverCandidates(StagedPipeline.Emitter<GitHubUserDto> emitter) throws InterruptedException {
+        int emitted = 0;
+        int idleRounds = 0;
+        for (int round = 0; emitted < crawlTarget; round++) {
+            if (round >= discoverMaxRounds || idleRounds >= DISCOVER_MAX_IDLE_ROUNDS) {
+                log.warn("发现{}轮后停止，新用户数: {}，目标: {}", round, emitted, crawlTarget);
+                return;
+            }
+            int count = Math.min(crawlTarget - emitted, DISCOVER_BATCH_SIZE);
+            List<GitHubUserDto> users = followerGraphCrawler.discover(count);
+            if (users.isEmpty()) {
+                users = userSearchDiscovery.discover(count);
+            }
             if (users == null || users.isEmpty()) {
-                log.warn("未获取到GitHub用户数据");
+                log.warn("未获取到更多GitHub用户数据");
                 return;
             }
-
-            int successCount = 0;
-            List<GitHubUser> usersToInsert = new ArrayList<>();
-            List<GitHubRepo> reposToInsert = new ArrayList<>();
-
+            int emittedBefore = emitted;
             for (GitHubUserDto user : users) {
-                try {
-                    // 检查用户是否已存在
-                    if (gitHubUserMapper.selectById(user.getId()) != null) {
-                        log.info("用户 {} 已存在，跳过", user.getLogin());
-                        continue;
-                    }
-
-                    // 获取用户详细信息
-                    GitHubUserInfoDto userInfo = gitHubClient.getUserInfo(user.getLogin());
-                    if (userInfo == null) {
-                        log.warn("无法获取用户 {} 的详细信息，跳过", user.getLogin());
-                        continue;
-                    }
-
-                    // 获取用户仓库
-                    List<GitHubRepoDto> userRepos = gitHubClient.getUserRepos(user.getLogin());
-                    if (userRepos == null || userRepos.isEmpty()) {
-                        log.warn("用户 {} 没有可用仓库，跳过", user.getLogin());
-                        continue;
-                    }
-
-                    // 转换并准备用户数据
-                    GitHubUser gitHubUser = convertToGitHubUser(user, userInfo);
-
-                    // 获取用户事件并计算相关指标
-                    List<GitHubEventDto> events = gitHubClient.getUserEvents(user.getLogin());
-                    processUserEvents(gitHubUser, events);
-
-                    // 处理用户仓库
-                    List<GitHubRepo> userRepoList = processUserRepos(userRepos, user.getLogin());
-
-                    // 计算用户评分
-                    calculateUserScores(gitHubUser, userRepoList);
-
-                    // 添加到批量插入列表
-                    usersToInsert.add(gitHubUser);
-                    reposToInsert.addAll(userRepoList);
-
-                    successCount++;
+                // 布隆过滤器判定不存在的用户无需查库
+                if (knownUserFilter.mightContain(user.getId()) && gitHubUserMapper.selectById(user.getId()) != null) {
+                    log.debug("用户 {} 已存在，跳过", user.getLogin());
+                    followerGraphCrawler.acknowledge(List.of(user.getId()));
+                    continue;
+                }
+                emitter.emit(user);
+                emitted++;
+            }
+            idleRounds = emitted == emittedBefore ? idleRounds + 1 : 0;
+        }
+    }
 
-                    // 每处理10个用户执行一次批量插入
-                    if (successCount % 10 == 0) {
-                        batchInsertData(usersToInsert, reposToInsert);
-                        usersToInsert.clear();
-                        reposToInsert.clear();
-                    }
-                } catch (Exception e) {
-                    log.error("处理用户 {} 数据时发生错误: {}", user.getLogin(), e.getMessage(), e);
-                    // 单个用户失败不影响整体流程
+    /**
+     * 补全阶段：批量获取用户画像，GraphQL获取失败的用户回退到REST接口
+     */
+    private void enrichUsers(List<GitHubUserDto> users, StagedPipeline.Emitter<EnrichedUser> emitter) throws InterruptedException {
+        Map<String, GitHubUserProfileDto> profiles = gitHubGraphQLClient.getUserProfiles(
+                users.stream().map(GitHubUserDto::getLogin).toList());
+
+        for (GitHubUserDto user : users) {
+            GitHubUserProfileDto profile = profiles.get(user.getLogin());
+            if (profile != null) {
+                if (profile.getRepos() == null || profile.getRepos().isEmpty()) {
+                    log.warn("用户 {} 没有可用仓库，跳过", user.getLogin());
+                    followerGraphCrawler.acknowledge(List.of(user.getId()));
+                    continue;
                 }
+                emitter.emit(new EnrichedUser(user, profile, null, profile.getRepos(), null));
+                continue;
             }
 
-            // 处理剩余数据
-            if (!usersToInsert.isEmpty()) {
-                batchInsertData(usersToInsert, reposToInsert);
+            GitHubUserInfoDto userInfo = gitHubClient.getUserInfo(user.getLogin());
+            if (userInfo == null) {
+                log.warn("无法获取用户 {} 的详细信息，跳过", user.getLogin());
+                followerGraphCrawler.acknowledge(List.of(user.getId()));
+                continue;
+            }
+            List<GitHubRepoDto> userRepos = gitHubClient.getUserRepos(user.getLogin());
+            if (userRepos == null || userRepos.isEmpty()) {
+                log.warn("用户 {} 没有可用仓库，跳过", user.getLogin());
+                followerGraphCrawler.acknowledge(List.of(user.getId()));
+                continue;
             }
+            List<GitHubEventDto> events = gitHubClient.getUserEvents(user.getLogin());
+            emitter.emit(new EnrichedUser(user, null, userInfo, userRepos, events));
+        }
+    }
 
-            log.info("本次定时任务完成，成功添加 {} 个用户", successCount);
-        } catch (Exception e) {
-            log.error("执行GitHub用户数据定时任务时发生异常: {}", e.getMessage(), e);
+    /**
+     * 评分阶段：转换用户和仓库数据并计算评分
+     */
+    private void scoreUser(EnrichedUser enriched, StagedPipeline.Emitter<ScoredUser> emitter) throws InterruptedException {
+        GitHubUserDto user = enriched.user();
+        GitHubUser gitHubUser;
+        if (enriched.profile() != null) {
+            // 使用贡献统计作为活跃度指标
+            gitHubUser = convertToGitHubUser(user, enriched.profile().getUserInfo());
+            processUserContributions(gitHubUser, enriched.profile());
+        } else {
+            gitHubUser = convertToGitHubUser(user, enriched.userInfo());
+            processUserEvents(gitHubUser, enriched.events());
         }
+        List<GitHubRepo> userRepoList = processUserRepos(enriched.repos(), user.getLogin());
+        calculateUserScores(gitHubUser, userRepoList);
+        emitter.emit(new ScoredUser(gitHubUser, userRepoList));
     }
 
+    /**
+     * 添加GitHub用户
+     * 用户信息、事件和仓库三个请求同时发起并共用一个截止时间，数据全部到达后才开启事务写库，
+     * 不在网络请求期间占用数据库连接
+     */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public GitHubUser addGitHubUserByLogin(String login) {
         if (login == null || login.trim().isEmpty()) {
             log.error("GitHub用户名不能为空");
@@ -159,14 +301,46 @@ public class GitHubServiceImpl implements GitHubService {
         try {
             log.info("开始添加GitHub用户: {}", login);
 
-            // 获取用户详细信息
-            GitHubUserInfoDto userInfo = gitHubClient.getUserInfo(login);
-            if (userInfo == null) {
-                log.warn("无法获取用户 {} 的详细信息", login);
-                return null;
+            // 按用户名已存在时无需请求GitHub
+            GitHubUser existing = gitHubUserMapper.selectOne(new LambdaQueryWrapper<GitHubUser>()
+                    .eq(GitHubUser::getLogin, login)
+                    .last("LIMIT 1"));
+            if (existing != null) {
+                log.info("用户 {} 已存在", login);
+                followerGraphCrawler.offerSeed(existing.getId(), existing.getLogin());
+                return existing;
+            }
+
+            // 三个请求互不依赖，同时发起，保留调用方的请求优先级
+            GitHubRequestPriority priority = GitHubRequestPriority.current();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(addUserTimeoutSeconds);
+            Future<GitHubUserInfoDto> userInfoFuture = fanOutExecutor.submit(() ->
+                    GitHubRequestPriority.call(priority, () -> gitHubClient.getUserInfo(login)));
+            Future<List<GitHubEventDto>> eventsFuture = fanOutExecutor.submit(() ->
+                    GitHubRequestPriority.call(priority, () -> gitHubClient.getUserEvents(login)));
+            Future<List<GitHubRepoDto>> reposFuture = fanOutExecutor.submit(() ->
+                    GitHubRequestPriority.call(priority, () -> gitHubClient.getUserRepos(login)));
+
+            GitHubUserInfoDto userInfo;
+            List<GitHubEventDto> events;
+            List<GitHubRepoDto> userRepos;
+            try {
+                userInfo = awaitBefore(userInfoFuture, deadline);
+                if (userInfo == null) {
+                    log.warn("无法获取用户 {} 的详细信息", login);
+                    return null;
+                }
+                events = awaitBefore(eventsFuture, deadline);
+                userRepos = awaitBefore(reposFuture, deadline);
+            } finally {
+                // 提前返回或超时时取消尚未完成的请求；被中断的请求如果是合并请求的发起方，等待的调用会重新发起
+                cancelIfRunning(userInfoFuture);
+                cancelIfRunning(eventsFuture);
+                cancelIfRunning(reposFuture);
             }
 
-            GitHubUser user = gitHubUserMapper.selectById(userInfo.getId());
+            GitHubUser user = knownUserFilter.mightContain(userInfo.getId())
+                    ? gitHubUserMapper.selectById(userInfo.getId()) : null;
             // 检查用户是否已存在
             if (user != null) {
                 log.info("用户 {} 已存在", login);
@@ -176,13 +350,11 @@ public class GitHubServiceImpl implements GitHubService {
             // 转换用户数据并处理
             GitHubUser gitHubUser = convertToGitHubUser(null, userInfo);
 
-            // 获取用户事件并计算相关指标
-            List<GitHubEventDto> events = gitHubClient.getUserEvents(login);
+            // 根据用户事件计算相关指标
             processUserEvents(gitHubUser, events);
 
-            // 获取用户仓库并处理
+            // 处理用户仓库
             List<GitHubRepo> userRepoList = new ArrayList<>();
-            List<GitHubRepoDto> userRepos = gitHubClient.getUserRepos(login);
             if (userRepos != null && !userRepos.isEmpty()) {
                 userRepoList = processUserRepos(userRepos, login);
             } else {
@@ -192,25 +364,40 @@ public class GitHubServiceImpl implements GitHubService {
             // 计算用户评分
             calculateUserScores(gitHubUser, userRepoList);
 
-            // 保存用户数据
-            gitHubUserMapper.insert(gitHubUser);
-
-            // 保存仓库数据(只有在有仓库时才执行)
-            if (!userRepoList.isEmpty()) {
-                for (GitHubRepo repo : userRepoList) {
-                    GitHubRepo gitHubRepo = gitHubRepoMapper.selectById(repo.getId());
-                    if (gitHubRepo == null) gitHubRepoMapper.insert(repo);
-                }
-            }
+            // 数据全部到达后再在事务中保存用户和仓库
+            List<GitHubRepo> reposToSave = userRepoList;
+            transactionTemplate.executeWithoutResult(status -> batchInsertData(List.of(gitHubUser), reposToSave));
+            // 平台用户查询过的用户作为关系图的种子，其关注关系中的用户优先抓取
+            followerGraphCrawler.offerSeed(gitHubUser.getId(), gitHubUser.getLogin());
 
             log.info("成功添加用户 {} 的数据", login);
             return gitHubUser;
+        } catch (TimeoutException e) {
+            log.warn("获取用户 {} 的数据超过{}秒未完成", login, addUserTimeoutSeconds);
+            throw new RuntimeException("获取GitHub用户数据超时: " + login, e);
         } catch (Exception e) {
             log.error("添加用户 {} 数据时发生错误: {}", login, e.getMessage(), e);
             throw new RuntimeException("添加GitHub用户失败: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 在截止时间前等待请求结果
+     */
+    private <T> T awaitBefore(Future<T> future, long deadline)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 只取消尚未完成的请求，已完成的请求不受影响
+     */
+    private static void cancelIfRunning(Future<?> future) {
+        if (!future.isDone()) {
+            future.cancel(true);
+        }
+    }
+
     @Override
     public GitHubRepo getGitHubRepoByLoginAndRepoName(String login, String repoName) {
         // 1. 参数验证改进
@@ -277,37 +464,34 @@ public class GitHubServiceImpl implements GitHubService {
 
 
     /**
-     * 批量插入数据到数据库，先检查记录是否已存在
+     * 批量写入数据到数据库，需要在 transactionTemplate 开启的事务中调用
+     * 按块拼成多行 INSERT ... ON DUPLICATE KEY UPDATE，已存在的记录由数据库直接更新，不再逐条查询和插入；
+     * 过滤器和刷新时间在事务提交后才记录，回滚的用户不会被当作已入库
      */
-    @Transactional(rollbackFor = Exception.class)
-    public void batchInsertData(List<GitHubUser> users, List<GitHubRepo> repos) {
+    private void batchInsertData(List<GitHubUser> users, List<GitHubRepo> repos) {
         try {
-            int userInsertCount = 0;
-            int repoInsertCount = 0;
+            int userAffected = 0;
+            int repoAffected = 0;
 
-            if (!users.isEmpty()) {
-                for (GitHubUser user : users) {
-                    gitHubUserMapper.insert(user);
-                    userInsertCount++;
-                }
+            for (List<GitHubUser> chunk : Lists.partition(users, upsertChunkSize)) {
+                userAffected += gitHubUserMapper.upsertBatch(chunk);
             }
-
-            if (!repos.isEmpty()) {
-                for (GitHubRepo repo : repos) {
-                    // 检查仓库是否已存在
-                    GitHubRepo existingRepo = gitHubRepoMapper.selectById(repo.getId());
-                    if (existingRepo == null) {
-                        gitHubRepoMapper.insert(repo);
-                        repoInsertCount++;
-                    } else {
-                        log.debug("仓库 {} 已存在，跳过插入", repo.getFullName());
-                    }
+            // 其他节点写入的用户可能不在本节点的过滤器中，提交后一并记录
+            List<Integer> userIds = users.stream().map(GitHubUser::getId).toList();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    knownUserFilter.putAll(userIds);
+                    userFreshnessTracker.markRefreshed(userIds);
                 }
+            });
+
+            for (List<GitHubRepo> chunk : Lists.partition(repos, upsertChunkSize)) {
+                repoAffected += gitHubRepoMapper.upsertBatch(chunk);
             }
 
-            log.info("批量插入完成: {} 个用户(尝试 {})和 {} 个仓库(尝试 {})",
-                    userInsertCount, users.size(),
-                    repoInsertCount, repos.size());
+            log.info("批量写入完成: {} 个用户(影响 {} 行)和 {} 个仓库(影响 {} 行)",
+                    users.size(), userAffected, repos.size(), repoAffected);
         } catch (Exception e) {
             log.error("批量插入数据失败: {}", e.getMessage(), e);
             throw e;
@@ -375,6 +559,21 @@ public class GitHubServiceImpl implements GitHubService {
         user.setPrReviews(prReviewEventCount);
     }
 
+    /**
+     * 处理GraphQL获取的用户贡献统计
+     * 活跃度阈值按REST事件设定：REST最多只能看到300个事件，GraphQL的统计没有上限，
+     * 总数超过300时按比例缩放，使两种来源的用户评分可比。
+     * 仍有的差异：GraphQL按提交数统计，REST按推送次数统计(一次推送可包含多个提交)，GraphQL来源的提交数偏高。
+     */
+    private void processUserContributions(GitHubUser user, GitHubUserProfileDto profile) {
+        int total = profile.getCommits() + profile.getPrs() + profile.getIssues() + profile.getPrReviews();
+        double scale = total > GitHubConstant.GITHUB_EVENT_LIMIT ? (double) GitHubConstant.GITHUB_EVENT_LIMIT / total : 1;
+        user.setCommits((int) Math.round(profile.getCommits() * scale));
+        user.setPrs((int) Math.round(profile.getPrs() * scale));
+        user.setIssues((int) Math.round(profile.getIssues() * scale));
+        user.setPrReviews((int) Math.round(profile.getPrReviews() * scale));
+    }
+
     /**
      * 将 GitHub 用户 DTO 转换为实体类
      */
@@ -728,4 +927,17 @@ public class GitHubServiceImpl implements GitHubService {
 
         return results;
     }
+
+    /**
+     * 补全后的用户数据，GraphQL获取成功时只有profile，否则为REST接口的用户信息、仓库和事件
+     */
+    private record EnrichedUser(GitHubUserDto user, GitHubUserProfileDto profile, GitHubUserInfoDto userInfo,
+                                List<GitHubRepoDto> repos, List<GitHubEventDto> events) {
+    }
+
+    /**
+     * 评分完成待入库的用户和仓库
+     */
+    private record ScoredUser(GitHubUser user, List<GitHubRepo> repos) {
+    }
 }
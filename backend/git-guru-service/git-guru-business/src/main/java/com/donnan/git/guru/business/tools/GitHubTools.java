@@ -1,8 +1,10 @@
 package com.donnan.git.guru.business.tools;
 
+import com.donnan.git.guru.business.crawler.UserFreshnessTracker;
 import com.donnan.git.guru.business.entity.github.pojo.ESGitHubRepoContent;
 import com.donnan.git.guru.business.entity.github.pojo.GitHubRepo;
 import com.donnan.git.guru.business.entity.github.pojo.GitHubUser;
+import com.donnan.git.guru.business.github.GitHubRequestPriority;
 import com.donnan.git.guru.business.service.GitHubService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,6 +15,7 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 
 /**
+ * 聊天工具，用户在等待结果，所有GitHub请求走交互通道
  * @author Donnan
  */
 @RequiredArgsConstructor
@@ -22,6 +25,8 @@ public class GitHubTools {
 
     private final GitHubService gitHubService;
 
+    private final UserFreshnessTracker userFreshnessTracker;
+
     @Tool(description = "获取某个GitHub用户的个人信息(包括根据GitGuru的算法计算得到的技术score信息)。若返回为空，则是因为该用户不存在，请提醒用户输入正确的用户昵称。")
     public GitHubUser getGitHubUser(@ToolParam(description = "用户昵称") String login) {
         if (login == null || login.isEmpty()) {
@@ -29,7 +34,9 @@ public class GitHubTools {
         }
 
         log.info("getGitHubUser被调用了, login: {}", login);
-        return gitHubService.addGitHubUserByLogin(login);
+        userFreshnessTracker.recordDemand(login);
+        return GitHubRequestPriority.call(GitHubRequestPriority.INTERACTIVE,
+                () -> gitHubService.addGitHubUserByLogin(login));
     }
 
     @Tool(description = "获取某个用户的某个GitHub仓库的基础信息，若返回为空，则是因为该仓库不存在，请注意：必须是指定用户的指定仓库名称，因为GitHub上可能存在多个同名仓库，若用户没有这样做，请提醒他。")
@@ -39,7 +46,9 @@ public class GitHubTools {
         }
 
         log.info("getGitHubRepo被调用了, login: {}, repoName: {}", login, repoName);
-        return gitHubService.getGitHubRepoByLoginAndRepoName(login, repoName);
+        userFreshnessTracker.recordDemand(login);
+        return GitHubRequestPriority.call(GitHubRequestPriority.INTERACTIVE,
+                () -> gitHubService.getGitHubRepoByLoginAndRepoName(login, repoName));
 
     }
 
@@ -49,6 +58,8 @@ public class GitHubTools {
             return null;
         }
         log.info("getGitHubRepoContents被调用了, login: {}, repoName: {}, question: {}", login, repoName, question);
-        return gitHubService.getGitHubRepoContents(login, repoName, question);
+        userFreshnessTracker.recordDemand(login);
+        return GitHubRequestPriority.call(GitHubRequestPriority.INTERACTIVE,
+                () -> gitHubService.getGitHubRepoContents(login, repoName, question));
     }
 }
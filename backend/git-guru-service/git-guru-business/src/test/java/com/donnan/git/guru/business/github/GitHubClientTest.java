@@ -0,0 +1,58 @@
+package com.donnan.git.guru.business.github;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GitHubClient 的请求异常分类和内容截断测试
+ * @author Donnan
+ */
+class GitHubClientTest {
+
+    @Test
+    void timeoutsAndResetsAreOverload() {
+        assertTrue(GitHubClient.isOverloaded(new SocketTimeoutException("Read timed out")));
+        assertTrue(GitHubClient.isOverloaded(new ConnectTimeoutException("Connect timed out")));
+        assertTrue(GitHubClient.isOverloaded(new SocketException("Connection reset by peer")));
+    }
+
+    @Test
+    void otherFailuresAreNotOverload() {
+        assertFalse(GitHubClient.isOverloaded(new UnknownHostException("api.github.com")));
+        assertFalse(GitHubClient.isOverloaded(new SocketException("Network is unreachable")));
+        assertFalse(GitHubClient.isOverloaded(new IOException("解析响应失败")));
+        assertFalse(GitHubClient.isOverloaded(new IllegalStateException("读取内容出错")));
+    }
+
+    @Test
+    void truncationBacksOffToCharacterBoundary() {
+        // "a€b": € 占3个字节
+        byte[] bytes = "a\u20acb".getBytes(StandardCharsets.UTF_8);
+        assertEquals(1, GitHubClient.utf8Boundary(bytes, 2));
+        assertEquals(1, GitHubClient.utf8Boundary(bytes, 3));
+        assertEquals(4, GitHubClient.utf8Boundary(bytes, 4));
+        assertEquals(5, GitHubClient.utf8Boundary(bytes, 5));
+        assertEquals(0, GitHubClient.utf8Boundary(bytes, 0));
+    }
+
+    @Test
+    void truncationKeepsWholeFourByteCharacters() {
+        // "中" 占3个字节，U+1F600 表情占4个字节
+        byte[] bytes = "\u4e2d\ud83d\ude00".getBytes(StandardCharsets.UTF_8);
+        for (int length = 3; length < 7; length++) {
+            assertEquals(3, GitHubClient.utf8Boundary(bytes, length));
+        }
+        assertEquals(7, GitHubClient.utf8Boundary(bytes, 7));
+        assertEquals(0, GitHubClient.utf8Boundary(bytes, 2));
+    }
+}
@@ -0,0 +1,110 @@
+package com.donnan.git.guru.business.github;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GitHubDiskCache 的读写和中断测试
+ * @author Donnan
+ */
+class GitHubDiskCacheTest {
+
+    private Path dir;
+
+    private GitHubDiskCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("github-disk-cache");
+        cache = new GitHubDiskCache(dir, 1 << 20, 64 << 10);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        cache.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void readsBackRecordsAfterReopen() throws IOException {
+        cache.put("a", Map.of("ETag", "\"1\""), bytes("first"));
+        cache.put("a", Map.of("ETag", "\"2\""), bytes("second"));
+        cache.close();
+
+        cache = new GitHubDiskCache(dir, 1 << 20, 64 << 10);
+        GitHubDiskCache.Record record = cache.get("a");
+        assertNotNull(record);
+        assertEquals("\"2\"", record.getHeaders().get("ETag"));
+        assertArrayEquals(bytes("second"), record.getBody());
+        assertNull(cache.get("missing"));
+    }
+
+    @Test
+    void interruptedCallerDoesNotBreakCache() throws Exception {
+        cache.put("before", Map.of(), bytes("before"));
+
+        // 已被中断的线程读写段文件，FileChannel会因此关闭整个段文件
+        CompletableFuture<Boolean> interrupted = CompletableFuture.supplyAsync(() -> {
+            Thread.currentThread().interrupt();
+            cache.put("during", Map.of(), bytes("during"));
+            GitHubDiskCache.Record record = cache.get("before");
+            boolean stillInterrupted = Thread.interrupted();
+            return stillInterrupted && record != null;
+        });
+        assertTrue(interrupted.get(5, TimeUnit.SECONDS));
+
+        cache.put("after", Map.of(), bytes("after"));
+        assertArrayEquals(bytes("before"), cache.get("before").getBody());
+        assertArrayEquals(bytes("during"), cache.get("during").getBody());
+        assertArrayEquals(bytes("after"), cache.get("after").getBody());
+    }
+
+    @Test
+    void cacheSurvivesInterruptsDuringConcurrentIo() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread worker = Thread.ofVirtual().start(() -> {
+            for (int i = 0; running.get(); i++) {
+                cache.put("key" + (i % 50), Map.of(), bytes("value" + i));
+                cache.get("key" + ((i + 25) % 50));
+            }
+        });
+        for (int i = 0; i < 200; i++) {
+            worker.interrupt();
+            Thread.sleep(1);
+        }
+        running.set(false);
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+
+        cache.put("after", Map.of(), bytes("after"));
+        assertArrayEquals(bytes("after"), cache.get("after").getBody());
+        for (int i = 0; i < 50; i++) {
+            assertNotNull(cache.get("key" + i));
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,57 @@
+package com.donnan.git.guru.business.github;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GitHubHedgePolicy 的对冲延迟和令牌测试
+ * @author Donnan
+ */
+class GitHubHedgePolicyTest {
+
+    private static final long DEFAULT_DELAY = 500;
+
+    @Test
+    void usesDefaultDelayUntilEnoughSamples() {
+        GitHubHedgePolicy policy = new GitHubHedgePolicy(0.95, 0.1, DEFAULT_DELAY);
+        for (int i = 0; i < 19; i++) {
+            policy.recordLatency("/users/{}", 100);
+        }
+
+        assertEquals(DEFAULT_DELAY, policy.hedgeDelayMillis("/users/{}"));
+        policy.recordLatency("/users/{}", 100);
+        assertEquals(100, policy.hedgeDelayMillis("/users/{}"));
+    }
+
+    @Test
+    void keepsSamplesPerEndpoint() {
+        GitHubHedgePolicy policy = new GitHubHedgePolicy(0.95, 0.1, DEFAULT_DELAY);
+        for (int i = 0; i < 100; i++) {
+            policy.recordLatency("/users/{}", 80);
+            policy.recordLatency("/repos/{}/{}/git/trees/{}", 3000);
+        }
+
+        // 慢接口的延迟不会拉高其他接口的对冲延迟
+        assertEquals(80, policy.hedgeDelayMillis("/users/{}"));
+        assertEquals(3000, policy.hedgeDelayMillis("/repos/{}/{}/git/trees/{}"));
+        assertEquals(DEFAULT_DELAY, policy.hedgeDelayMillis("/search/users"));
+    }
+
+    @Test
+    void hedgesAreLimitedByRatio() {
+        GitHubHedgePolicy policy = new GitHubHedgePolicy(0.95, 0.25, DEFAULT_DELAY);
+        assertTrue(policy.tryHedge());
+        assertFalse(policy.tryHedge());
+
+        for (int i = 0; i < 3; i++) {
+            policy.recordRequest();
+        }
+        assertFalse(policy.tryHedge());
+        policy.recordRequest();
+        assertTrue(policy.tryHedge());
+        assertEquals(2, policy.getHedgedCount());
+    }
+}
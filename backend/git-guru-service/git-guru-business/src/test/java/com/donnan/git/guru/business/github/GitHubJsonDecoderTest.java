@@ -0,0 +1,172 @@
+package com.donnan.git.guru.business.github;
+
+import com.alibaba.fastjson.JSON;
+import com.donnan.git.guru.business.entity.github.dto.GitHubEventDto;
+import com.donnan.git.guru.business.entity.github.dto.GitHubRepoDto;
+import com.donnan.git.guru.business.entity.github.dto.GitHubUserInfoDto;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GitHubJsonDecoder 的解码测试，使用 github-fixtures 中的样例，验证下划线命名的字段能映射到DTO，
+ * 并与原来先读成String再解析的方式比较每个用户的内存分配
+ * @author Donnan
+ */
+class GitHubJsonDecoderTest {
+
+    private static final String LOGIN = "octocat";
+
+    private static final int USER_ID = 583231;
+
+    // 分配量测量的预热和测量次数
+    private static final int WARMUP_ROUNDS = 2000;
+
+    private static final int MEASURE_ROUNDS = 5000;
+
+    @Test
+    void decodesRepoListFields() throws IOException {
+        List<GitHubRepoDto> repos = GitHubJsonDecoder.decodeList(fixture("users/_/repos.json"), GitHubRepoDto.class);
+
+        GitHubRepoDto repo = repos.get(0);
+        assertEquals(1000, repo.getId());
+        assertEquals("project-0", repo.getName());
+        assertEquals(LOGIN + "/project-0", repo.getFull_name());
+        assertEquals("https://github.com/" + LOGIN + "/project-0", repo.getHtml_url());
+        assertEquals(LOGIN, repo.getOwner().getLogin());
+        assertEquals(USER_ID, repo.getOwner().getId());
+        assertFalse(repo.isFork());
+        assertEquals(1500, repo.getStargazers_count());
+        assertEquals(1500, repo.getWatchers_count());
+        assertEquals(300, repo.getForks_count());
+        assertEquals(0, repo.getOpen_issues_count());
+        assertEquals(1024, repo.getSize());
+        assertEquals("Java", repo.getLanguage());
+        assertEquals("main", repo.getDefault_branch());
+        assertArrayEquals(new String[]{"java"}, repo.getTopics());
+        assertEquals(date("2019-03-01T10:00:00Z"), repo.getCreatedAt());
+        assertEquals(date("2024-08-01T10:00:00Z"), repo.getUpdatedAt());
+        assertEquals(date("2024-08-01T10:00:00Z"), repo.getPushedAt());
+
+        assertEquals(1, repos.get(1).getOpen_issues_count());
+    }
+
+    @Test
+    void decodesUserInfoFields() throws IOException {
+        GitHubUserInfoDto user = GitHubJsonDecoder.decodeObject(fixture("users/_.json"), GitHubUserInfoDto.class);
+
+        assertEquals(LOGIN, user.getLogin());
+        assertEquals(USER_ID, user.getId());
+        assertEquals("https://avatars.githubusercontent.com/u/" + USER_ID + "?v=4", user.getAvatarUrl());
+        assertEquals("https://github.com/" + LOGIN, user.getHtmlUrl());
+        assertEquals("public", user.getUserViewType());
+        assertFalse(user.isSiteAdmin());
+        assertEquals(8, user.getPublicRepos());
+        assertEquals(8, user.getPublicGists());
+        assertEquals(1200, user.getFollowers());
+        assertEquals(9, user.getFollowing());
+        assertNull(user.getTwitterUsername());
+        assertEquals(date("2011-01-25T18:44:36Z"), user.getCreatedAt());
+    }
+
+    @Test
+    void decodesEventFields() throws IOException {
+        List<GitHubEventDto> events = GitHubJsonDecoder.decodeList(fixture("users/_/events.json"), GitHubEventDto.class);
+
+        assertEquals("40000000000", events.get(0).getId());
+        assertEquals("PushEvent", events.get(0).getType());
+        assertEquals(date("2024-09-20T08:00:00Z"), events.get(0).getCreatedAt());
+    }
+
+    @Test
+    void decodesNullAndRejectsNonArray() throws IOException {
+        assertNull(GitHubJsonDecoder.decodeObject(stream("null"), GitHubRepoDto.class));
+        assertNull(GitHubJsonDecoder.decodeList(stream("null"), GitHubRepoDto.class));
+        assertThrows(IOException.class, () -> GitHubJsonDecoder.decodeList(stream("{\"id\":1}"), GitHubRepoDto.class));
+    }
+
+    @Test
+    void streamingDecodeAllocatesLessPerUser() throws IOException {
+        // 每个用户需要解码一次用户信息和一页仓库列表
+        byte[] userInfo = fixture("users/_.json").readAllBytes();
+        byte[] repos = fixture("users/_/repos.json").readAllBytes();
+
+        Decode stringPath = () -> {
+            // 原来的方式：EntityUtils读成完整的String，再用fastjson解析
+            JSON.parseObject(EntityUtils.toString(new ByteArrayEntity(userInfo, ContentType.APPLICATION_JSON),
+                    StandardCharsets.UTF_8), GitHubUserInfoDto.class);
+            JSON.parseArray(EntityUtils.toString(new ByteArrayEntity(repos, ContentType.APPLICATION_JSON),
+                    StandardCharsets.UTF_8), GitHubRepoDto.class);
+        };
+        Decode streamingPath = () -> {
+            GitHubJsonDecoder.decodeObject(new ByteArrayInputStream(userInfo), GitHubUserInfoDto.class);
+            GitHubJsonDecoder.decodeList(new ByteArrayInputStream(repos), GitHubRepoDto.class);
+        };
+
+        long stringBytes = allocatedPerRound(stringPath);
+        long streamingBytes = allocatedPerRound(streamingPath);
+        System.out.printf("每个用户的解码分配: String解析 %d 字节, 流式解码 %d 字节 (%.0f%%)%n",
+                stringBytes, streamingBytes, 100.0 * streamingBytes / stringBytes);
+        assertTrue(streamingBytes < stringBytes,
+                "流式解码分配 " + streamingBytes + " 字节，不少于String解析的 " + stringBytes + " 字节");
+    }
+
+    /**
+     * 预热后测量当前线程每轮解码分配的字节数
+     */
+    private static long allocatedPerRound(Decode decode) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            decode.run();
+        }
+        long threadId = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            decode.run();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / MEASURE_ROUNDS;
+    }
+
+    @FunctionalInterface
+    private interface Decode {
+        void run() throws IOException;
+    }
+
+    /**
+     * 读取样例并按模拟服务的规则替换占位符
+     */
+    private static InputStream fixture(String path) throws IOException {
+        try (InputStream in = GitHubJsonDecoderTest.class.getResourceAsStream("/github-fixtures/" + path)) {
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8)
+                    .replace("{{base}}", "http://localhost")
+                    .replace("{{id}}", String.valueOf(USER_ID))
+                    .replace("{{1}}", LOGIN);
+            return stream(content);
+        }
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Date date(String iso) {
+        return Date.from(Instant.parse(iso));
+    }
+}
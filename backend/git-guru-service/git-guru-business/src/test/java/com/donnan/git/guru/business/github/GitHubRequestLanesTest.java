@@ -0,0 +1,97 @@
+package com.donnan.git.guru.business.github;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GitHubRequestLanes 的通道隔离、让行和异步排队测试
+ * @author Donnan
+ */
+class GitHubRequestLanesTest {
+
+    private final GitHubRequestLanes lanes = new GitHubRequestLanes(1, 1);
+
+    @Test
+    void lanesDoNotShareSlots() {
+        assertTrue(lanes.tryAcquire(GitHubRequestPriority.INTERACTIVE));
+        assertFalse(lanes.tryAcquire(GitHubRequestPriority.INTERACTIVE));
+        assertTrue(lanes.tryAcquire(GitHubRequestPriority.BACKGROUND));
+        assertFalse(lanes.tryAcquire(GitHubRequestPriority.BACKGROUND));
+    }
+
+    @Test
+    void backgroundWakesWhenWaitingInteractiveCallerLeaves() throws Exception {
+        lanes.acquire(GitHubRequestPriority.INTERACTIVE);
+
+        Thread interactive = Thread.ofVirtual().start(() -> {
+            try {
+                lanes.acquire(GitHubRequestPriority.INTERACTIVE);
+            } catch (InterruptedIOException e) {
+                // 预期被中断
+            }
+        });
+        awaitInteractiveWaiting();
+
+        // 后台通道空闲，但有交互请求在等待，后台请求让行
+        CompletableFuture<Void> background = CompletableFuture.runAsync(() -> {
+            try {
+                lanes.acquire(GitHubRequestPriority.BACKGROUND);
+            } catch (InterruptedIOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(background.isDone());
+
+        // 等待的交互请求离开后，后台请求不需要等到其他请求释放许可
+        interactive.interrupt();
+        background.get(2, TimeUnit.SECONDS);
+        assertEquals(1, lanes.getBackgroundInFlight());
+    }
+
+    @Test
+    void asyncWaiterIsCompletedByRelease() throws InterruptedIOException {
+        lanes.acquire(GitHubRequestPriority.INTERACTIVE);
+        CompletableFuture<Void> waiter = lanes.acquireAsync(GitHubRequestPriority.INTERACTIVE);
+        assertFalse(waiter.isDone());
+
+        // 排队的异步交互请求同样使后台请求让行
+        assertFalse(lanes.tryAcquire(GitHubRequestPriority.BACKGROUND));
+
+        // 释放的许可直接交给排队的请求
+        lanes.release(GitHubRequestPriority.INTERACTIVE);
+        assertTrue(waiter.isDone());
+        assertEquals(1, lanes.getInteractiveInFlight());
+        assertTrue(lanes.tryAcquire(GitHubRequestPriority.BACKGROUND));
+    }
+
+    @Test
+    void cancelledAsyncWaiterLeavesQueue() throws InterruptedIOException {
+        lanes.acquire(GitHubRequestPriority.INTERACTIVE);
+        CompletableFuture<Void> waiter = lanes.acquireAsync(GitHubRequestPriority.INTERACTIVE);
+        waiter.cancel(false);
+
+        assertTrue(lanes.tryAcquire(GitHubRequestPriority.BACKGROUND));
+        lanes.release(GitHubRequestPriority.INTERACTIVE);
+        assertEquals(0, lanes.getInteractiveInFlight());
+    }
+
+    private void awaitInteractiveWaiting() throws InterruptedException {
+        // 交互通道已满时，后台的tryAcquire失败说明交互请求已经在等待
+        for (int i = 0; i < 500; i++) {
+            if (!lanes.tryAcquire(GitHubRequestPriority.BACKGROUND)) {
+                return;
+            }
+            lanes.release(GitHubRequestPriority.BACKGROUND);
+            Thread.sleep(2);
+        }
+        throw new AssertionError("交互请求没有进入等待");
+    }
+}
@@ -0,0 +1,147 @@
+package com.donnan.git.guru.business.github;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GitHubSingleFlight 按优先级合并调用的测试
+ * @author Donnan
+ */
+class GitHubSingleFlightTest {
+
+    private final GitHubSingleFlight singleFlight = new GitHubSingleFlight();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void samePriorityCallsShareOneLoad() throws Exception {
+        CompletableFuture<String> leader = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> load(leader));
+        CompletableFuture<String> second = singleFlight.executeAsync("key", () -> load(new CompletableFuture<>()));
+
+        leader.complete("value");
+        assertEquals("value", first.get(1, TimeUnit.SECONDS));
+        assertEquals("value", second.get(1, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(1, singleFlight.getDeduplicatedCount());
+    }
+
+    @Test
+    void interactiveCallDoesNotWaitForBackgroundLoad() throws Exception {
+        CompletableFuture<String> background = new CompletableFuture<>();
+        singleFlight.executeAsync("key", () -> load(background));
+
+        CompletableFuture<String> interactive = GitHubRequestPriority.call(GitHubRequestPriority.INTERACTIVE,
+                () -> singleFlight.executeAsync("key", () -> load(CompletableFuture.completedFuture("fresh"))));
+
+        // 后台调用还没有完成，交互调用已经拿到自己的结果
+        assertEquals("fresh", interactive.get(1, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+        background.complete("stale");
+    }
+
+    @Test
+    void backgroundCallJoinsInteractiveLoad() throws Exception {
+        CompletableFuture<String> leader = new CompletableFuture<>();
+        CompletableFuture<String> interactive = GitHubRequestPriority.call(GitHubRequestPriority.INTERACTIVE,
+                () -> singleFlight.executeAsync("key", () -> load(leader)));
+        CompletableFuture<String> background = singleFlight.executeAsync("key", () -> load(new CompletableFuture<>()));
+
+        leader.complete("value");
+        assertEquals("value", interactive.get(1, TimeUnit.SECONDS));
+        assertEquals("value", background.get(1, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void followerRetriesWhenLeaderIsInterrupted() throws Exception {
+        CountDownLatch leading = new CountDownLatch(1);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                loads.incrementAndGet();
+                leading.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted");
+                }
+                return "leader";
+            }));
+            assertTrue(leading.await(5, TimeUnit.SECONDS));
+            Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> {
+                loads.incrementAndGet();
+                return "retried";
+            }));
+            // 等跟随方开始等待后再中断发起方
+            while (singleFlight.getTotalCount() < 2) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(50);
+            leader.cancel(true);
+
+            // 跟随方没有跟着失败，而是重新发起了调用
+            assertEquals("retried", follower.get(5, TimeUnit.SECONDS));
+            assertEquals(2, loads.get());
+            assertEquals(0, singleFlight.getDeduplicatedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void followerSharesOrdinaryFailure() throws Exception {
+        CountDownLatch leading = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                loads.incrementAndGet();
+                leading.countDown();
+                try {
+                    fail.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("boom");
+            }));
+            assertTrue(leading.await(5, TimeUnit.SECONDS));
+            Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> {
+                loads.incrementAndGet();
+                return "retried";
+            }));
+            while (singleFlight.getTotalCount() < 2) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(50);
+            fail.countDown();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<String> load(CompletableFuture<String> result) {
+        loads.incrementAndGet();
+        return result;
+    }
+}
@@ -0,0 +1,536 @@
+package com.donnan.git.guru.business.github;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 本地GitHub API模拟服务，用于在不访问GitHub的情况下压测抓取任务和聊天工具
+ * 响应来自 github-fixtures 目录下的样例，按请求路径查找：先找同名文件，再找 .json 文件，
+ * 路径中的任意一段都可以用 _ 文件(目录)通配，样例中的 {{1}}、{{2}}... 替换为请求路径的对应段，
+ * {{id}} 替换为由第一个变量段计算的稳定id，{{base}} 替换为本服务地址。
+ * 样例是按GitHub文档中的响应格式手写的合成数据，字段名和结构与真实响应一致，数值和文本是虚构的，
+ * 适合压测和解码测试，不能代替真实响应验证GitHub新增或变更的字段。
+ * <p>
+ * 除样例外还模拟了以下接口：
+ * <ul>
+ *     <li>POST /graphql：按 graphql/user.json 为每个 $l0、$l1... 变量生成 u0、u1... 用户，ghost开头的用户名返回null和错误</li>
+ *     <li>/repos/{owner}/{repo}/tarball：按 git/trees/HEAD 中的文件和对应的contents样例生成tar.gz</li>
+ *     <li>contents和blobs接口的文件：Accept为 application/vnd.github.raw 时返回原始内容，否则返回base64编码的JSON</li>
+ * </ul>
+ * 同时模拟GitHub的行为：ETag和304、每个token的额度响应头(GraphQL单独计算)、额度耗尽时的403、随机的二级限流和长尾延迟。
+ * <p>
+ * 启动后把 github.client.base.url 指向本服务即可，例如：
+ * <pre>
+ * java ... GitHubStandInServer --port=8089 --latency=30 --tail=200 --secondary=0.01
+ * github.client.base.url=http://localhost:8089
+ * </pre>
+ * @author Donnan
+ */
+@Slf4j
+public class GitHubStandInServer {
+
+    // 每个token每小时的额度
+    private static final int RATE_LIMIT = 5000;
+
+    private static final long RATE_WINDOW_MILLIS = 60 * 60 * 1000L;
+
+    // 关注关系接口的路径
+    private static final Pattern RELATION_PATH = Pattern.compile("/users/[^/]+/(followers|following)");
+
+    // tarball接口的路径
+    private static final Pattern TARBALL_PATH = Pattern.compile("/repos/([^/]+)/([^/]+)/tarball(/.*)?");
+
+    // 返回文件内容的接口路径，可以按Accept返回原始内容或JSON
+    private static final Pattern FILE_PATH = Pattern.compile("/repos/[^/]+/[^/]+/(contents|git/blobs)/(.+)");
+
+    private static final String RAW_MEDIA_TYPE = "application/vnd.github.raw";
+
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+
+    // 生成的关注关系中用户id的范围
+    private static final int RELATION_ID_RANGE = 1_000_000;
+
+    private final HttpServer server;
+
+    private final Path fixtures;
+
+    // 基础延迟(毫秒)
+    private final long latencyMillis;
+
+    // 长尾延迟的均值(毫秒)，按指数分布叠加在基础延迟上
+    private final long tailMillis;
+
+    // 触发二级限流的概率
+    private final double secondaryLimitRate;
+
+    private final Map<String, TokenBudget> budgets = new ConcurrentHashMap<>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong notModifiedCount = new AtomicLong();
+
+    private final AtomicLong limitedCount = new AtomicLong();
+
+    public GitHubStandInServer(int port, Path fixtures, long latencyMillis, long tailMillis,
+                               double secondaryLimitRate) throws IOException {
+        this.fixtures = fixtures;
+        this.latencyMillis = latencyMillis;
+        this.tailMillis = tailMillis;
+        this.secondaryLimitRate = secondaryLimitRate;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/", this::handle);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new ConcurrentHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (arg.startsWith("--") && eq > 0) {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        Path fixtures = options.containsKey("fixtures") ? Paths.get(options.get("fixtures"))
+                : Paths.get(GitHubStandInServer.class.getResource("/github-fixtures").toURI());
+        GitHubStandInServer standIn = new GitHubStandInServer(
+                Integer.parseInt(options.getOrDefault("port", "8089")),
+                fixtures,
+                Long.parseLong(options.getOrDefault("latency", "30")),
+                Long.parseLong(options.getOrDefault("tail", "0")),
+                Double.parseDouble(options.getOrDefault("secondary", "0")));
+        Runtime.getRuntime().addShutdownHook(new Thread(standIn::stop));
+        standIn.start();
+    }
+
+    public void start() {
+        server.start();
+        log.info("GitHub模拟服务已启动: {}, 样例目录: {}", baseUrl(), fixtures);
+    }
+
+    public void stop() {
+        server.stop(0);
+        log.info("GitHub模拟服务已停止, 请求数: {}, 304: {}, 限流: {}",
+                requestCount.get(), notModifiedCount.get(), limitedCount.get());
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try (exchange) {
+            byte[] requestBody = exchange.getRequestBody().readAllBytes();
+            sleep();
+
+            URI uri = exchange.getRequestURI();
+            boolean graphql = "/graphql".equals(uri.getPath()) && "POST".equals(exchange.getRequestMethod());
+            // GraphQL和REST的额度分开计算
+            String budgetKey = (graphql ? "graphql|" : "rest|") + exchange.getRequestHeaders().getFirst("Authorization");
+            TokenBudget budget = budgets.computeIfAbsent(budgetKey, k -> new TokenBudget());
+            if (ThreadLocalRandom.current().nextDouble() < secondaryLimitRate) {
+                limitedCount.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                budget.writeHeaders(exchange, false);
+                send(exchange, 403, "{\"message\":\"You have exceeded a secondary rate limit.\"}");
+                return;
+            }
+
+            if (graphql) {
+                if (!budget.writeHeaders(exchange, true)) {
+                    limitedCount.incrementAndGet();
+                    send(exchange, 403, "{\"message\":\"API rate limit exceeded\"}");
+                    return;
+                }
+                send(exchange, 200, graphql(requestBody));
+                return;
+            }
+
+            Payload payload = route(uri, exchange.getRequestHeaders().getFirst("Accept"));
+            if (payload == null) {
+                budget.writeHeaders(exchange, true);
+                send(exchange, 404, "{\"message\":\"Not Found\"}");
+                return;
+            }
+            byte[] body = payload.body();
+
+            String etag = "\"" + sha1(body) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                // 304不消耗额度
+                notModifiedCount.incrementAndGet();
+                budget.writeHeaders(exchange, false);
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            if (!budget.writeHeaders(exchange, true)) {
+                limitedCount.incrementAndGet();
+                send(exchange, 403, "{\"message\":\"API rate limit exceeded\"}");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", payload.contentType());
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (Exception e) {
+            log.error("处理模拟请求失败: {}", exchange.getRequestURI(), e);
+        }
+    }
+
+    /**
+     * 按请求路径生成REST响应
+     * @return 响应内容，没有对应样例时返回null
+     */
+    private Payload route(URI uri, String accept) throws IOException {
+        String path = uri.getPath();
+        if ("/users".equals(path)) {
+            return new Payload(userList(uri.getQuery()), JSON_TYPE);
+        }
+        if (RELATION_PATH.matcher(path).matches()) {
+            return new Payload(relationList(path, uri.getQuery()), JSON_TYPE);
+        }
+        Matcher tarball = TARBALL_PATH.matcher(path);
+        if (tarball.matches()) {
+            byte[] body = tarball(tarball.group(1), tarball.group(2));
+            return body == null ? null : new Payload(body, "application/x-gzip");
+        }
+
+        byte[] body = fixture(path);
+        if (body == null) {
+            return null;
+        }
+        if (isJson(body)) {
+            return new Payload(body, JSON_TYPE);
+        }
+        Matcher file = FILE_PATH.matcher(path);
+        if (file.matches() && (accept == null || !accept.contains(RAW_MEDIA_TYPE))) {
+            return new Payload(fileJson(file.group(2), body), JSON_TYPE);
+        }
+        return new Payload(body, "text/plain; charset=utf-8");
+    }
+
+    /**
+     * 不带raw媒体类型请求文件时，按contents和blobs接口的格式返回base64编码的内容
+     */
+    private static byte[] fileJson(String path, byte[] content) {
+        JSONObject json = new JSONObject(new LinkedHashMap<>());
+        json.put("name", path.substring(path.lastIndexOf('/') + 1));
+        json.put("path", path);
+        json.put("sha", sha1(content));
+        json.put("size", content.length);
+        json.put("type", "file");
+        json.put("encoding", "base64");
+        // GitHub每60个字符换行
+        json.put("content", Base64.getMimeEncoder(60, new byte[]{'\n'}).encodeToString(content) + "\n");
+        return json.toJSONString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * GraphQL批量查询，变量 $l0、$l1... 对应别名 u0、u1...
+     */
+    private byte[] graphql(byte[] requestBody) throws IOException {
+        JSONObject request = JSON.parseObject(new String(requestBody, StandardCharsets.UTF_8));
+        JSONObject variables = request == null ? null : request.getJSONObject("variables");
+        JSONObject data = new JSONObject(new LinkedHashMap<>());
+        JSONArray errors = new JSONArray();
+        String template = Files.readString(fixtures.resolve("graphql/user.json"), StandardCharsets.UTF_8);
+        for (int i = 0; variables != null && variables.containsKey("l" + i); i++) {
+            String login = variables.getString("l" + i);
+            if (login.startsWith("ghost")) {
+                // 不存在的用户返回null，并在errors中说明
+                data.put("u" + i, null);
+                JSONObject error = new JSONObject();
+                error.put("type", "NOT_FOUND");
+                error.put("path", List.of("u" + i));
+                error.put("message", "Could not resolve to a User with the login of '" + login + "'.");
+                errors.add(error);
+                continue;
+            }
+            data.put("u" + i, JSON.parseObject(render(template, List.of("users", login))));
+        }
+
+        JSONObject response = new JSONObject(new LinkedHashMap<>());
+        response.put("data", data);
+        if (!errors.isEmpty()) {
+            response.put("errors", errors);
+        }
+        return JSON.toJSONString(response, SerializerFeature.WriteMapNullValue)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按目录树样例中的文件和对应的contents样例生成tarball，根目录与GitHub一致为 {owner}-{repo}-{sha}/
+     */
+    private byte[] tarball(String owner, String repo) throws IOException {
+        byte[] treeJson = fixture("/repos/" + owner + "/" + repo + "/git/trees/HEAD");
+        if (treeJson == null) {
+            return null;
+        }
+        JSONObject tree = JSON.parseObject(new String(treeJson, StandardCharsets.UTF_8));
+        String root = owner + "-" + repo + "-" + tree.getString("sha") + "/";
+
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeTarEntry(tar, root, '5', new byte[0]);
+        JSONArray entries = tree.getJSONArray("tree");
+        for (int i = 0; i < entries.size(); i++) {
+            JSONObject entry = entries.getJSONObject(i);
+            String path = entry.getString("path");
+            boolean file = "blob".equals(entry.getString("type"));
+            byte[] content = file ? fixture("/repos/" + owner + "/" + repo + "/contents/" + path) : new byte[0];
+            // ustar的name字段只有100字节，样例中没有更长的路径
+            if (content == null || (root + path).getBytes(StandardCharsets.UTF_8).length > 100) {
+                continue;
+            }
+            writeTarEntry(tar, root + path + (file ? "" : "/"), file ? '0' : '5', content);
+        }
+        tar.writeBytes(new byte[1024]);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(tar.toByteArray());
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeTarEntry(ByteArrayOutputStream tar, String name, char type, byte[] content) {
+        byte[] header = new byte[512];
+        putTarField(header, 0, 100, name);
+        putTarField(header, 100, 8, type == '5' ? "0000755" : "0000644");
+        putTarField(header, 124, 12, String.format("%011o", content.length));
+        putTarField(header, 136, 12, String.format("%011o", System.currentTimeMillis() / 1000));
+        header[156] = (byte) type;
+        putTarField(header, 257, 6, "ustar");
+        putTarField(header, 263, 2, "00");
+        // 计算校验和时校验和字段按空格计算
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        int checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        putTarField(header, 148, 8, String.format("%06o", checksum) + "\0 ");
+        tar.writeBytes(header);
+        tar.writeBytes(content);
+        tar.writeBytes(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private static void putTarField(byte[] header, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+
+    /**
+     * 随机抓取使用的 /users?since= 接口，按since生成连续的用户，不需要样例
+     */
+    private byte[] userList(String query) {
+        long since = queryLong(query, "since", 0);
+        int perPage = (int) Math.min(queryLong(query, "per_page", 30), 100);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 1; i <= perPage; i++) {
+            long id = since + i;
+            if (i > 1) {
+                json.append(',');
+            }
+            json.append("{\"login\":\"user").append(id).append("\",\"id\":").append(id)
+                    .append(",\"url\":\"").append(baseUrl()).append("/users/user").append(id)
+                    .append("\",\"type\":\"User\",\"site_admin\":false}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 关系图抓取使用的 /users/{login}/followers 和 /users/{login}/following 接口，
+     * 按用户名和方向生成稳定的邻居，id落在较小的范围内，使不同用户的邻居有重叠
+     */
+    private byte[] relationList(String path, String query) {
+        int perPage = (int) Math.min(queryLong(query, "per_page", 30), 100);
+        Random random = new Random(path.hashCode());
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < perPage; i++) {
+            long id = random.nextInt(RELATION_ID_RANGE) + 1;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"login\":\"user").append(id).append("\",\"id\":").append(id)
+                    .append(",\"url\":\"").append(baseUrl()).append("/users/user").append(id)
+                    .append("\",\"type\":\"User\",\"site_admin\":false}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按请求路径查找样例，路径段可以用 _ 通配
+     */
+    private byte[] fixture(String path) throws IOException {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            return null;
+        }
+        Path file = resolve(fixtures, segments, 0);
+        if (file == null) {
+            return null;
+        }
+        return render(Files.readString(file, StandardCharsets.UTF_8), segments).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 替换样例中的占位符
+     * @param segments 请求路径的各段
+     */
+    private String render(String content, List<String> segments) {
+        content = content.replace("{{base}}", baseUrl())
+                .replace("{{id}}", String.valueOf(segments.size() > 1 ? (segments.get(1).hashCode() & 0x7fffffff) : 1));
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            content = content.replace("{{" + i + "}}", segments.get(i));
+        }
+        return content;
+    }
+
+    private Path resolve(Path dir, List<String> segments, int index) {
+        String segment = segments.get(index);
+        boolean last = index == segments.size() - 1;
+        for (String name : new String[]{segment, "_"}) {
+            if (last) {
+                for (Path candidate : new Path[]{dir.resolve(name), dir.resolve(name + ".json")}) {
+                    if (Files.isRegularFile(candidate)) {
+                        return candidate;
+                    }
+                }
+            } else if (Files.isDirectory(dir.resolve(name))) {
+                Path found = resolve(dir.resolve(name), segments, index + 1);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void sleep() throws InterruptedException {
+        long delay = latencyMillis;
+        if (tailMillis > 0) {
+            delay += (long) (-tailMillis * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        send(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static boolean isJson(byte[] body) {
+        return body.length > 0 && (body[0] == '{' || body[0] == '[');
+    }
+
+    private static long queryLong(String query, String name, long defaultValue) {
+        if (query == null) {
+            return defaultValue;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                try {
+                    return Long.parseLong(pair.substring(name.length() + 1));
+                } catch (NumberFormatException e) {
+                    return defaultValue;
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static String sha1(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 响应内容和类型
+     */
+    private record Payload(byte[] body, String contentType) {
+    }
+
+    /**
+     * 单个token的额度，按小时窗口重置
+     */
+    private static class TokenBudget {
+        private long windowStart = System.currentTimeMillis();
+        private int remaining = RATE_LIMIT;
+
+        /**
+         * 写入额度响应头
+         * @param consume 是否消耗一次额度
+         * @return 额度是否足够
+         */
+        private synchronized boolean writeHeaders(HttpExchange exchange, boolean consume) {
+            long now = System.currentTimeMillis();
+            if (now - windowStart >= RATE_WINDOW_MILLIS) {
+                windowStart = now;
+                remaining = RATE_LIMIT;
+            }
+            boolean allowed = remaining > 0;
+            if (consume && allowed) {
+                remaining--;
+            }
+            exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(RATE_LIMIT));
+            exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(remaining));
+            exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf((windowStart + RATE_WINDOW_MILLIS) / 1000));
+            return allowed;
+        }
+    }
+}
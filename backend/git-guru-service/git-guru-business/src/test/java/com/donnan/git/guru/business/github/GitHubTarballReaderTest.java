@@ -0,0 +1,254 @@
+package com.donnan.git.guru.business.github;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * GitHubTarballReader 的tar解析测试，tarball在测试中按ustar格式手工构造
+ * @author Donnan
+ */
+class GitHubTarballReaderTest {
+
+    private static final String ROOT = "octocat-hello-abc123/";
+
+    @Test
+    void readsWantedFilesAndStripsRoot() throws IOException {
+        byte[] tarball = new TarBuilder()
+                .directory(ROOT)
+                .file(ROOT + "README.md", "# Hello")
+                .file(ROOT + "src/Main.java", "class Main {}")
+                .file(ROOT + "docs/guide.md", "guide")
+                .build();
+
+        Map<String, String> read = readAll(tarball, path -> path.endsWith(".md"), Integer.MAX_VALUE, Long.MAX_VALUE);
+
+        assertEquals(Map.of("README.md", "# Hello", "docs/guide.md", "guide"), read);
+    }
+
+    @Test
+    void readsFileAfterSkippedFileOfBlockMultipleSize() throws IOException {
+        byte[] tarball = new TarBuilder()
+                .file(ROOT + "big.bin", "x".repeat(1024))
+                .file(ROOT + "odd.bin", "y".repeat(513))
+                .file(ROOT + "README.md", "after")
+                .build();
+
+        Map<String, String> read = readAll(tarball, "README.md"::equals, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+        assertEquals(Map.of("README.md", "after"), read);
+    }
+
+    @Test
+    void usesUstarPrefixForLongPaths() throws IOException {
+        String dir = ROOT + "a".repeat(80) + "/" + "b".repeat(40);
+        byte[] tarball = new TarBuilder()
+                .ustarFile(dir, "notes.md", "deep")
+                .build();
+
+        Map<String, String> read = readAll(tarball, path -> true, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+        assertEquals(Map.of(dir.substring(ROOT.length()) + "/notes.md", "deep"), read);
+    }
+
+    @Test
+    void paxPathOverridesHeaderName() throws IOException {
+        String longPath = ROOT + "docs/" + "c".repeat(150) + ".md";
+        byte[] tarball = new TarBuilder()
+                .pax("path", longPath)
+                .file(ROOT + "truncated-name", "pax content")
+                .file(ROOT + "next.md", "next")
+                .build();
+
+        Map<String, String> read = readAll(tarball, path -> true, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+        assertEquals(Map.of(longPath.substring(ROOT.length()), "pax content", "next.md", "next"), read);
+    }
+
+    @Test
+    void gnuLongNameOverridesHeaderName() throws IOException {
+        String longPath = ROOT + "d".repeat(120) + "/README.md";
+        byte[] tarball = new TarBuilder()
+                .gnuLongName(longPath)
+                .file(ROOT + "short", "long name content")
+                .build();
+
+        Map<String, String> read = readAll(tarball, path -> true, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+        assertEquals(Map.of(longPath.substring(ROOT.length()), "long name content"), read);
+    }
+
+    @Test
+    void truncatesFilesToMaxFileBytes() throws IOException {
+        byte[] tarball = new TarBuilder()
+                .file(ROOT + "a.md", "0123456789")
+                .file(ROOT + "b.md", "abc")
+                .build();
+
+        Map<String, String> read = readAll(tarball, path -> true, 4, Long.MAX_VALUE);
+
+        assertEquals(Map.of("a.md", "0123", "b.md", "abc"), read);
+    }
+
+    @Test
+    void stopsWhenByteBudgetIsUsed() throws IOException {
+        byte[] tarball = new TarBuilder()
+                .file(ROOT + "a.md", "12345")
+                .file(ROOT + "b.md", "67890")
+                .file(ROOT + "c.md", "never")
+                .build();
+
+        GitHubTarballReader reader = new GitHubTarballReader(Integer.MAX_VALUE, 8);
+        Map<String, String> read = new LinkedHashMap<>();
+        long used = reader.read(new ByteArrayInputStream(tarball), path -> true, (path, content) -> {
+            read.put(path, content);
+            return true;
+        });
+
+        assertEquals(8, used);
+        assertEquals(List.of("a.md", "b.md"), new ArrayList<>(read.keySet()));
+        assertEquals("678", read.get("b.md"));
+    }
+
+    @Test
+    void stopsWhenConsumerReturnsFalse() throws IOException {
+        byte[] tarball = new TarBuilder()
+                .file(ROOT + "a.md", "first")
+                .file(ROOT + "b.md", "second")
+                .build();
+
+        List<String> paths = new ArrayList<>();
+        new GitHubTarballReader(Integer.MAX_VALUE, Long.MAX_VALUE).read(new ByteArrayInputStream(tarball),
+                path -> true, (path, content) -> {
+                    paths.add(path);
+                    return false;
+                });
+
+        assertEquals(List.of("a.md"), paths);
+    }
+
+    @Test
+    void ignoresTruncatedArchive() throws IOException {
+        byte[] tarball = new TarBuilder()
+                .file(ROOT + "a.md", "complete")
+                .build();
+        byte[] raw = gunzip(tarball);
+        byte[] truncated = new byte[512 + 512 + 100];
+        System.arraycopy(raw, 0, truncated, 0, truncated.length);
+
+        Map<String, String> read = readAll(gzip(truncated), path -> true, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+        assertEquals(Map.of("a.md", "complete"), read);
+    }
+
+    private static Map<String, String> readAll(byte[] tarball, Predicate<String> wanted,
+                                               int maxFileBytes, long budget) throws IOException {
+        Map<String, String> read = new LinkedHashMap<>();
+        new GitHubTarballReader(maxFileBytes, budget).read(new ByteArrayInputStream(tarball), wanted,
+                (path, content) -> {
+                    read.put(path, content);
+                    return true;
+                });
+        return read;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * 按ustar格式构造tar.gz
+     */
+    private static class TarBuilder {
+
+        private final ByteArrayOutputStream tar = new ByteArrayOutputStream();
+
+        TarBuilder directory(String name) {
+            entry(name, "", '5', new byte[0]);
+            return this;
+        }
+
+        TarBuilder file(String name, String content) {
+            entry(name, "", '0', content.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        TarBuilder ustarFile(String prefix, String name, String content) {
+            entry(name, prefix, '0', content.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        TarBuilder pax(String key, String value) {
+            String record = " " + key + "=" + value + "\n";
+            int length = record.length();
+            // 记录长度包含长度字段本身
+            while (String.valueOf(length).length() + record.length() != length) {
+                length = String.valueOf(length).length() + record.length();
+            }
+            entry("PaxHeader", "", 'x', (length + record).getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        TarBuilder gnuLongName(String name) {
+            entry("././@LongLink", "", 'L', (name + "\0").getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        byte[] build() throws IOException {
+            tar.writeBytes(new byte[1024]);
+            return gzip(tar.toByteArray());
+        }
+
+        private void entry(String name, String prefix, char type, byte[] content) {
+            byte[] header = new byte[512];
+            put(header, 0, 100, name);
+            put(header, 100, 8, "0000644");
+            put(header, 124, 12, String.format("%011o", content.length));
+            put(header, 136, 12, "00000000000");
+            header[156] = (byte) type;
+            put(header, 257, 6, "ustar");
+            put(header, 263, 2, "00");
+            put(header, 345, 155, prefix);
+            // 计算校验和时校验和字段按空格计算
+            for (int i = 148; i < 156; i++) {
+                header[i] = ' ';
+            }
+            int checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xff;
+            }
+            put(header, 148, 8, String.format("%06o", checksum) + "\0 ");
+            tar.writeBytes(header);
+            tar.writeBytes(content);
+            tar.writeBytes(new byte[(512 - content.length % 512) % 512]);
+        }
+
+        private static void put(byte[] header, int offset, int length, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.donnan.git.guru.business.github;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GitHubTokenScheduler 的额度保留和续租测试
+ * @author Donnan
+ */
+class GitHubTokenSchedulerTest {
+
+    private static final int SEARCH_LIMIT = 30;
+
+    private static String resetInOneMinute() {
+        return String.valueOf(System.currentTimeMillis() / 1000 + 60);
+    }
+
+    @Test
+    void backgroundCallerCanUseWholeSearchBudget() {
+        GitHubTokenScheduler scheduler = new GitHubTokenScheduler(List.of("token"), SEARCH_LIMIT, 0, null, 1);
+        String reset = resetInOneMinute();
+
+        int used = 0;
+        for (int remaining = SEARCH_LIMIT - 1; remaining >= 0; remaining--) {
+            String token = scheduler.tryAcquire(GitHubRequestPriority.BACKGROUND);
+            if (token == null) {
+                break;
+            }
+            used++;
+            scheduler.update(token, 200, String.valueOf(SEARCH_LIMIT), String.valueOf(remaining), reset, null);
+        }
+
+        assertEquals(SEARCH_LIMIT, used);
+        assertNull(scheduler.tryAcquire(GitHubRequestPriority.BACKGROUND));
+    }
+
+    @Test
+    void reserveFollowsObservedLimit() {
+        // 按REST默认额度创建，响应头表明实际只有30次额度时，保留额度按30计算
+        GitHubTokenScheduler scheduler = new GitHubTokenScheduler(List.of("token"), 0.2, null, 1);
+        String token = scheduler.tryAcquire(GitHubRequestPriority.BACKGROUND);
+        scheduler.update(token, 200, String.valueOf(SEARCH_LIMIT), "29", resetInOneMinute(), null);
+
+        // 保留 30 × 0.2 = 6 次，后台请求还能使用 29 - 6 = 23 次
+        int used = 0;
+        while (scheduler.tryAcquire(GitHubRequestPriority.BACKGROUND) != null) {
+            used++;
+        }
+        assertEquals(23, used);
+        assertNotNull(scheduler.tryAcquire(GitHubRequestPriority.INTERACTIVE));
+    }
+
+    @Test
+    void interactiveReserveIsKeptFromBackground() {
+        GitHubTokenScheduler scheduler = new GitHubTokenScheduler(List.of("token"), 0.2, null, 1);
+        String token = scheduler.tryAcquire(GitHubRequestPriority.INTERACTIVE);
+        scheduler.update(token, 200, "5000", "1000", resetInOneMinute(), null);
+
+        assertNull(scheduler.tryAcquire(GitHubRequestPriority.BACKGROUND));
+        assertNotNull(scheduler.tryAcquire(GitHubRequestPriority.INTERACTIVE));
+    }
+
+    @Test
+    void slowLedgerDoesNotBlockOtherCallers() throws Exception {
+        CountDownLatch leasing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RedisGitHubTokenLedger ledger = new RedisGitHubTokenLedger(null, "test") {
+            @Override
+            public Lease lease(String token, int count, int observedRemaining, long observedResetAt, long blockedUntil) {
+                if ("slow".equals(token) && count > 0) {
+                    leasing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return new Lease(count, 1000, 0, 0);
+            }
+        };
+        GitHubTokenScheduler scheduler = new GitHubTokenScheduler(List.of("slow", "fast"), 0, ledger, 10);
+        // 让slow的剩余额度更多，优先被选中并进入续租
+        scheduler.update("fast", 200, "5000", "100", resetInOneMinute(), null);
+
+        CompletableFuture<String> renewing = CompletableFuture.supplyAsync(() -> {
+            try {
+                return scheduler.acquire(GitHubRequestPriority.BACKGROUND);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(leasing.await(5, TimeUnit.SECONDS));
+
+        // 续租期间其他线程仍能更新响应头并拿到另一个token
+        CompletableFuture<String> other = CompletableFuture.supplyAsync(() -> {
+            scheduler.update("fast", 200, "5000", "99", resetInOneMinute(), null);
+            return scheduler.tryAcquire(GitHubRequestPriority.INTERACTIVE);
+        });
+        assertEquals("fast", other.get(2, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertEquals("slow", renewing.get(5, TimeUnit.SECONDS));
+    }
+}